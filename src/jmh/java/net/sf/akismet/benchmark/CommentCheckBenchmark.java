@@ -0,0 +1,190 @@
+/**
+ * Copyright (c) 2005-2007, David A. Czarnecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the "David A. Czarnecki" nor the names of
+ * its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * Products derived from this software may not be called "Akismet Java API",
+ * nor may "Akismet Java API" appear in their name, without prior written permission of
+ * David A. Czarnecki.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sf.akismet.benchmark;
+
+import net.sf.akismet.Akismet;
+import net.sf.akismet.CommentRequest;
+import net.sf.akismet.JdkHttpTransport;
+import net.sf.akismet.VerdictCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput and latency of comment-check against a local {@link StubServer}, with one thread and with
+ * many threads sharing one pooled {@link Akismet}. Sample time mode reports the latency percentiles; run
+ * with <code>-prof gc</code> for the allocation rate per call.
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class CommentCheckBenchmark {
+
+    static final int CONCURRENCY = 64;
+    static final int COMMENTS = 1024;
+
+    /**
+     * Stub latency in milliseconds
+     */
+    @Param({"0", "5"})
+    public long latency;
+
+    /**
+     * Share of calls failing with HTTP 500
+     */
+    @Param({"0"})
+    public double errorRate;
+
+    /**
+     * Whether comment-check results are cached
+     */
+    @Param({"false", "true"})
+    public boolean cache;
+
+    /**
+     * Transport, <code>commons</code> or <code>jdk</code>. The stub serves HTTP/1.1 without TLS, so the JDK
+     * client does not use HTTP/2 here.
+     */
+    @Param({"commons", "jdk"})
+    public String transport;
+
+    private StubServer server;
+    private Akismet akismet;
+    private CommentRequest[] requests;
+    private String[][] fields;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        server = new StubServer();
+        server.setLatency(latency);
+        server.setErrorRate(errorRate);
+
+        if ("jdk".equals(transport)) {
+            akismet = new Akismet("benchmark", "http://benchmark.example.com/", new JdkHttpTransport(false));
+        } else {
+            akismet = new Akismet("benchmark", "http://benchmark.example.com/", CONCURRENCY * 2, CONCURRENCY * 2);
+        }
+        akismet.setProxyConfiguration("127.0.0.1", server.getPort());
+        if (cache) {
+            akismet.setVerdictCache(new VerdictCache(COMMENTS * 2, VerdictCache.DEFAULT_TIME_TO_LIVE));
+        }
+
+        Map<String, String> other = new HashMap<String, String>();
+        other.put("HTTP_ACCEPT", "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8");
+        other.put("HTTP_ACCEPT_LANGUAGE", "en-US,en;q=0.5");
+
+        requests = new CommentRequest[COMMENTS];
+        fields = new String[COMMENTS][];
+        for (int i = 0; i < COMMENTS; i++) {
+            String author = i % 10 == 0 ? StubServer.SPAM_AUTHOR : "Commenter " + i;
+            fields[i] = new String[]{"192.0.2." + (i % 250), "Mozilla/5.0 (X11; Linux x86_64; rv:109.0) Gecko/20100101 Firefox/115.0",
+                    "http://benchmark.example.com/", "http://benchmark.example.com/posts/" + (i % 50), Akismet.COMMENT_TYPE_COMMENT,
+                    author, "commenter" + i + "@example.com", "http://example.com/~" + i,
+                    "Comment number " + i + ", with some text to give the body a realistic size. Thanks for the post!"};
+            requests[i] = CommentRequest.of(fields[i][0], fields[i][1], fields[i][2], fields[i][3], fields[i][4], fields[i][5],
+                    fields[i][6], fields[i][7], fields[i][8], other);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        akismet.shutdown();
+        server.stop();
+    }
+
+    /**
+     * Per-thread position in the comments
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        int next() {
+            int index = next;
+            next = (index + 1) % COMMENTS;
+            return index;
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean commentCheck(Cursor cursor) {
+        return akismet.commentCheck(requests[cursor.next()]);
+    }
+
+    @Benchmark
+    @Threads(CONCURRENCY)
+    public boolean commentCheckConcurrent(Cursor cursor) {
+        return akismet.commentCheck(requests[cursor.next()]);
+    }
+
+    /**
+     * Comment-check through the original parameter list, which encodes the comment on every call
+     */
+    @Benchmark
+    @Threads(1)
+    public boolean commentCheckParameters(Cursor cursor) {
+        String[] comment = fields[cursor.next()];
+        return akismet.commentCheck(comment[0], comment[1], comment[2], comment[3], comment[4], comment[5], comment[6],
+                comment[7], comment[8], null);
+    }
+
+    @Benchmark
+    @Threads(CONCURRENCY)
+    public boolean commentCheckParametersConcurrent(Cursor cursor) {
+        String[] comment = fields[cursor.next()];
+        return akismet.commentCheck(comment[0], comment[1], comment[2], comment[3], comment[4], comment[5], comment[6],
+                comment[7], comment[8], null);
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2005-2007, David A. Czarnecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the "David A. Czarnecki" nor the names of
+ * its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * Products derived from this software may not be called "Akismet Java API",
+ * nor may "Akismet Java API" appear in their name, without prior written permission of
+ * David A. Czarnecki.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sf.akismet.benchmark;
+
+import net.sf.akismet.Akismet;
+import net.sf.akismet.CommentRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of encoding a comment into a {@link CommentRequest}, without any network traffic. Run with
+ * <code>-prof gc</code> for the allocation per request.
+ *
+ * @version $Id$
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommentRequestBenchmark {
+
+    private Map<String, String> other;
+
+    @Setup
+    public void setUp() {
+        other = new HashMap<String, String>();
+        other.put("HTTP_ACCEPT", "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8");
+        other.put("HTTP_ACCEPT_LANGUAGE", "en-US,en;q=0.5");
+        other.put("HTTP_ACCEPT_ENCODING", "gzip, deflate");
+    }
+
+    @Benchmark
+    public CommentRequest encodeAscii() {
+        return CommentRequest.of("192.0.2.1", "Mozilla/5.0 (X11; Linux x86_64; rv:109.0) Gecko/20100101 Firefox/115.0",
+                "http://benchmark.example.com/", "http://benchmark.example.com/posts/1", Akismet.COMMENT_TYPE_COMMENT,
+                "Commenter", "commenter@example.com", "http://example.com/~commenter",
+                "A comment with some text to give the body a realistic size. Thanks for the post!", other);
+    }
+
+    @Benchmark
+    public CommentRequest encodeUnicode() {
+        return CommentRequest.of("2001:db8::1", "Mozilla/5.0 (X11; Linux x86_64; rv:109.0) Gecko/20100101 Firefox/115.0",
+                "http://benchmark.example.com/", "http://benchmark.example.com/posts/1", Akismet.COMMENT_TYPE_COMMENT,
+                "Jérôme Müller", "jerome@example.com", "http://example.com/~jérôme",
+                "Un commentaire accentué, avec des caractères spéciaux : « déjà vu », ½ € ☃ et assez de texte.", other);
+    }
+}
@@ -0,0 +1,251 @@
+/**
+ * Copyright (c) 2005-2007, David A. Czarnecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the "David A. Czarnecki" nor the names of
+ * its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * Products derived from this software may not be called "Akismet Java API",
+ * nor may "Akismet Java API" appear in their name, without prior written permission of
+ * David A. Czarnecki.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sf.akismet.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for the Akismet REST API. The stub answers <code>verify-key</code>, <code>comment-check</code>,
+ * <code>submit-spam</code> and <code>submit-ham</code> the way Akismet does, with a configurable latency and a
+ * configurable share of failed (HTTP 500) and <code>invalid</code> responses.
+ * <p></p>
+ * The stub is used as the HTTP proxy of an {@link net.sf.akismet.Akismet} instance, so the client builds the
+ * same URLs it would for the real service:
+ * <pre>
+ * akismet.setProxyConfiguration("127.0.0.1", stub.getPort());
+ * </pre>
+ * A comment is reported as spam when its author is <code>viagra-test-123</code>, as with the real service.
+ * <p></p>
+ * Run the JVM with <code>-Dsun.net.httpserver.nodelay=true</code>; without TCP_NODELAY the JDK server adds the
+ * delayed ACK time, about 40ms, to every response.
+ *
+ * @version $Id$
+ */
+public class StubServer {
+
+    public static final String SPAM_AUTHOR = "viagra-test-123";
+
+    private static final String SPAM_PARAMETER = "comment_author=" + SPAM_AUTHOR;
+    private static final byte[] VALID = ascii("valid");
+    private static final byte[] INVALID = ascii("invalid");
+    private static final byte[] TRUE = ascii("true");
+    private static final byte[] FALSE = ascii("false");
+    private static final byte[] THANKS = ascii("Thanks for making the web a better place.");
+    private static final byte[] ERROR = ascii("Internal Server Error");
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicLong requests = new AtomicLong();
+
+    private volatile long latency;
+    private volatile double errorRate;
+    private volatile double invalidRate;
+
+    /**
+     * Start a stub on an ephemeral port of the loopback interface
+     *
+     * @throws IOException If the server socket cannot be opened
+     */
+    public StubServer() throws IOException {
+        this(0);
+    }
+
+    /**
+     * Start a stub on the loopback interface
+     *
+     * @param port Port to listen on, <code>0</code> for an ephemeral port
+     * @throws IOException If the server socket cannot be opened
+     */
+    public StubServer(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                respond(exchange);
+            }
+        });
+
+        executor = Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "akismet-stub-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Return the port the stub listens on
+     *
+     * @return Port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Set the time the stub waits before answering
+     *
+     * @param latency Latency in milliseconds
+     */
+    public void setLatency(long latency) {
+        if (latency < 0) {
+            throw new IllegalArgumentException("Latency cannot be negative");
+        }
+
+        this.latency = latency;
+    }
+
+    /**
+     * Set the share of requests answered with HTTP 500
+     *
+     * @param errorRate Share between <code>0</code> and <code>1</code>
+     */
+    public void setErrorRate(double errorRate) {
+        if (errorRate < 0 || errorRate > 1) {
+            throw new IllegalArgumentException("Error rate must be between 0 and 1");
+        }
+
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * Set the share of <code>comment-check</code> requests answered with <code>invalid</code>
+     *
+     * @param invalidRate Share between <code>0</code> and <code>1</code>
+     */
+    public void setInvalidRate(double invalidRate) {
+        if (invalidRate < 0 || invalidRate > 1) {
+            throw new IllegalArgumentException("Invalid rate must be between 0 and 1");
+        }
+
+        this.invalidRate = invalidRate;
+    }
+
+    /**
+     * Return the number of requests answered so far
+     *
+     * @return Number of requests
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * Stop the stub
+     */
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        try {
+            requests.incrementAndGet();
+            String body = read(exchange.getRequestBody());
+            String path = exchange.getRequestURI().getPath();
+
+            if (latency > 0) {
+                try {
+                    Thread.sleep(latency);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (errorRate > 0 && random.nextDouble() < errorRate) {
+                send(exchange, 500, ERROR);
+            } else if (path.endsWith("/verify-key")) {
+                send(exchange, 200, VALID);
+            } else if (path.endsWith("/comment-check")) {
+                if (invalidRate > 0 && random.nextDouble() < invalidRate) {
+                    exchange.getResponseHeaders().add("X-akismet-debug-help", "Injected by StubServer");
+                    send(exchange, 200, INVALID);
+                } else {
+                    send(exchange, 200, body.contains(SPAM_PARAMETER) ? TRUE : FALSE);
+                }
+            } else if (path.endsWith("/submit-spam") || path.endsWith("/submit-ham")) {
+                send(exchange, 200, THANKS);
+            } else {
+                send(exchange, 404, INVALID);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(body);
+        out.close();
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(512);
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+
+        return out.toString("US-ASCII");
+    }
+
+    private static byte[] ascii(String value) {
+        try {
+            return value.getBytes("US-ASCII");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
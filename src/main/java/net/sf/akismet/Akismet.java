@@ -32,16 +32,22 @@
  */
 package net.sf.akismet;
 
-import org.apache.commons.httpclient.*;
-import org.apache.commons.httpclient.auth.AuthScope;
-import org.apache.commons.httpclient.methods.PostMethod;
-import org.apache.commons.httpclient.params.HttpClientParams;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import java.io.IOException;
-import java.util.Iterator;
+import java.net.HttpURLConnection;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
 
 /**
  * Akistmet Java API
@@ -56,34 +62,69 @@ public class Akismet {
     private Log logger = LogFactory.getLog(Akismet.class);
 
     // Constants
-    private static final String USER_AGENT_HEADER = "User-Agent";
-    private static final String USER_AGENT_VALUE = "Akismet Java API/1.02";
-
-    private static final String API_PARAMETER_KEY = "key";
-    private static final String API_PARAMETER_BLOG = "blog";
-    private static final String API_PARAMETER_USER_IP = "user_ip";
-    private static final String API_PARAMETER_USER_AGENT = "user_agent";
-    private static final String API_PARAMETER_REFERRER = "referrer";
-    private static final String API_PARAMETER_PERMALINK = "permalink";
-    private static final String API_PARAMETER_COMMENT_TYPE = "comment_type";
-    private static final String API_PARAMETER_COMMENT_AUTHOR = "comment_author";
-    private static final String API_PARAMETER_COMMENT_AUTHOR_EMAIL = "comment_author_email";
-    private static final String API_PARAMETER_COMMENT_AUTHOR_URL = "comment_author_url";
-    private static final String API_PARAMETER_COMMENT_CONTENT = "comment_content";
+    static final String USER_AGENT_VALUE = "Akismet Java API/1.02";
+
+    static final String API_PARAMETER_KEY = "key";
+    static final String API_PARAMETER_BLOG = "blog";
+    static final String API_PARAMETER_USER_IP = "user_ip";
+    static final String API_PARAMETER_USER_AGENT = "user_agent";
+    static final String API_PARAMETER_REFERRER = "referrer";
+    static final String API_PARAMETER_PERMALINK = "permalink";
+    static final String API_PARAMETER_COMMENT_TYPE = "comment_type";
+    static final String API_PARAMETER_COMMENT_AUTHOR = "comment_author";
+    static final String API_PARAMETER_COMMENT_AUTHOR_EMAIL = "comment_author_email";
+    static final String API_PARAMETER_COMMENT_AUTHOR_URL = "comment_author_url";
+    static final String API_PARAMETER_COMMENT_CONTENT = "comment_content";
+
+    public static final String FUNCTION_COMMENT_CHECK = "comment-check";
+    public static final String FUNCTION_SUBMIT_SPAM = "submit-spam";
+    public static final String FUNCTION_SUBMIT_HAM = "submit-ham";
+    public static final String FUNCTION_VERIFY_KEY = "verify-key";
 
     private static final String VALID_RESPONSE = "valid";
+    private static final String TRUE_RESPONSE = "true";
     private static final String FALSE_RESPONSE = "false";
+    private static final String DISCARD_PRO_TIP = "discard";
+    private static final String VERIFY_KEY_URL = "http://rest.akismet.com/1.1/verify-key";
+    private static final byte[] NO_PREFIX = new byte[0];
 
     public static final String COMMENT_TYPE_BLANK = "";
     public static final String COMMENT_TYPE_COMMENT = "comment";
     public static final String COMMENT_TYPE_TRACKBACK = "trackback";
     public static final String COMMENT_TYPE_PINGBACK = "pingback";
 
-    private HttpClient httpClient;
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 20;
+    public static final int DEFAULT_MAX_TOTAL_CONNECTIONS = 100;
+    public static final int DEFAULT_CONNECTION_TIMEOUT = 5000;
+    public static final int DEFAULT_SOCKET_TIMEOUT = 15000;
+    public static final long DEFAULT_RATE_LIMIT_WAIT = 1000;
+
+    private AkismetTransport transport;
+    private boolean ownsTransport;
+    private AkismetExecutor asyncExecutor;
+    private volatile VerdictCache verdictCache;
+    private volatile PreFilter preFilter;
+    private volatile KeyVerificationCache keyVerificationCache;
+    private volatile CircuitBreaker circuitBreaker;
+    private volatile Verdict circuitBreakerFallback = Verdict.UNKNOWN;
+    private volatile AkismetMetrics metrics;
+    private volatile TokenBucket rateLimit;
+    private volatile long rateLimitWait = DEFAULT_RATE_LIMIT_WAIT;
+    private volatile RetryPolicy retryPolicy;
+    private volatile HedgePolicy hedgePolicy;
+    private final Callable<Boolean> keyVerifier = new Callable<Boolean>() {
+        public Boolean call() throws IOException {
+            return Boolean.valueOf(postVerifyKey());
+        }
+    };
+    private boolean ownsAsyncExecutor;
+    private AkismetRegistry registry;
     private String apiKey;
     private String blog;
-    private boolean verifiedKey = false;
-    private int httpResult;
+    private String restURL;
+    private byte[] blogParameter;
+    private volatile boolean verifiedKey = false;
+    private volatile int httpResult;
 
     /**
      * Construct an instance to work with the Akismet API.
@@ -95,6 +136,11 @@ public class Akismet {
      * System.out.println("Testing comment spam: " + akismet.commentCheck("x.y.z.w", "XXX", "", "", "", "", "", "", "VIAGRA! LOTS OF VIAGRA!", null));
      * </pre>
      * <p>
+     * The instance holds a single connection and should not be shared between threads; use
+     * {@link #Akismet(String, String, int, int)} for concurrent use. The asynchronous calls, a {@link FeedbackQueue}
+     * and a {@link BulkScanner} switch the instance to a connection pool with the default limits.
+     * </p>
+     * <p>
      * You <strong>do not</strong> need to call {@link #verifyAPIKey()} before using the {@link #commentCheck(String, String, String, String, String, String, String, String, String, java.util.Map)}, 
      * {@link #submitSpam(String, String, String, String, String, String, String, String, String, java.util.Map)}, or
      * {@link #submitHam(String, String, String, String, String, String, String, String, String, java.util.Map)} methods.
@@ -116,19 +162,437 @@ public class Akismet {
             throw new IllegalArgumentException("Blog cannot be null");
         }
 
-        httpClient = new HttpClient();
-        HttpClientParams httpClientParams = new HttpClientParams();
-        DefaultHttpMethodRetryHandler defaultHttpMethodRetryHandler = new DefaultHttpMethodRetryHandler(0, false);
-        httpClientParams.setParameter(USER_AGENT_HEADER, USER_AGENT_VALUE);
-        httpClientParams.setParameter(HttpClientParams.RETRY_HANDLER, defaultHttpMethodRetryHandler);
-        httpClient.setParams(httpClientParams);
+        restURL = "http://" + apiKey + ".rest.akismet.com/1.1/";
+        blogParameter = encodeBlogParameter(blog);
+        keyVerificationCache = new KeyVerificationCache();
+
+        transport = new CommonsHttpTransport();
+        ownsTransport = true;
+    }
+
+    /**
+     * Construct an instance to work with the Akismet API that can be shared between threads.
+     * <p></p>
+     * Connections to Akismet are pooled and kept alive between calls, so concurrent calls do not serialize
+     * on a single socket and repeated calls do not pay for a new TCP connection each time. Use the
+     * per-call results from {@link #commentCheckResult(String, String, String, String, String, String, String, String, String, java.util.Map)},
+     * {@link #submitSpamResult(String, String, String, String, String, String, String, String, String, java.util.Map)} and
+     * {@link #submitHamResult(String, String, String, String, String, String, String, String, String, java.util.Map)}
+     * rather than {@link #getHttpResult()} when sharing an instance. Call {@link #shutdown()} when the instance
+     * is no longer needed to close the pooled connections.
+     *
+     * @param apiKey                Akismet API key
+     * @param blog                  Blog associated with the API key
+     * @param maxConnectionsPerHost Maximum number of pooled connections to a single Akismet host
+     * @param maxTotalConnections   Maximum number of pooled connections across all Akismet hosts
+     * @throws IllegalArgumentException If either the API key or blog is <code>null</code>, or if either connection limit is less than 1
+     */
+    public Akismet(String apiKey, String blog, int maxConnectionsPerHost, int maxTotalConnections) {
+        this.apiKey = apiKey;
+        this.blog = blog;
+
+        if (apiKey == null) {
+            throw new IllegalArgumentException("API key cannot be null");
+        }
+
+        if (blog == null) {
+            throw new IllegalArgumentException("Blog cannot be null");
+        }
+
+        restURL = "http://" + apiKey + ".rest.akismet.com/1.1/";
+        blogParameter = encodeBlogParameter(blog);
+        keyVerificationCache = new KeyVerificationCache();
+
+        transport = new CommonsHttpTransport(maxConnectionsPerHost, maxTotalConnections);
+        ownsTransport = true;
+    }
+
+    /**
+     * Construct an instance to work with the Akismet API over the given transport, for example a
+     * {@link JdkHttpTransport} to call Akismet over HTTP/2. The instance can be shared between threads if the
+     * transport can. A transport passed here is not shut down by {@link #shutdown()}, so it can be shared
+     * between instances.
+     *
+     * @param apiKey    Akismet API key
+     * @param blog      Blog associated with the API key
+     * @param transport Transport for the calls to Akismet
+     * @throws IllegalArgumentException If the API key, blog or transport is <code>null</code>
+     */
+    public Akismet(String apiKey, String blog, AkismetTransport transport) {
+        this.apiKey = apiKey;
+        this.blog = blog;
+
+        if (apiKey == null) {
+            throw new IllegalArgumentException("API key cannot be null");
+        }
+
+        if (blog == null) {
+            throw new IllegalArgumentException("Blog cannot be null");
+        }
+
+        if (transport == null) {
+            throw new IllegalArgumentException("Transport cannot be null");
+        }
+
+        restURL = "http://" + apiKey + ".rest.akismet.com/1.1/";
+        blogParameter = encodeBlogParameter(blog);
+        keyVerificationCache = new KeyVerificationCache();
+
+        this.transport = transport;
+    }
+
+    /**
+     * Construct a tenant of a registry, sharing its transport, executor and key verification cache
+     *
+     * @param apiKey   Akismet API key
+     * @param blog     Blog associated with the API key
+     * @param registry Registry
+     * @throws IllegalArgumentException If either the API key or blog is <code>null</code>
+     */
+    Akismet(String apiKey, String blog, AkismetRegistry registry) {
+        this.apiKey = apiKey;
+        this.blog = blog;
+
+        if (apiKey == null) {
+            throw new IllegalArgumentException("API key cannot be null");
+        }
+
+        if (blog == null) {
+            throw new IllegalArgumentException("Blog cannot be null");
+        }
+
+        restURL = "http://" + apiKey + ".rest.akismet.com/1.1/";
+        blogParameter = encodeBlogParameter(blog);
+        keyVerificationCache = registry.getKeyVerificationCache();
+
+        this.registry = registry;
+        transport = registry.getTransport();
+    }
+
+    /**
+     * Encode the blog parameter that precedes every comment body
+     *
+     * @param blog Blog
+     * @return Encoded <code>blog=...&amp;</code>
+     */
+    private static byte[] encodeBlogParameter(String blog) {
+        CommentRequest.FormBuffer buffer = new CommentRequest.FormBuffer(blog.length() + 8);
+        buffer.append(API_PARAMETER_BLOG, blog);
+        byte[] encoded = buffer.toByteArray();
+        byte[] parameter = new byte[encoded.length + 1];
+        System.arraycopy(encoded, 0, parameter, 0, encoded.length);
+        parameter[encoded.length] = '&';
+        return parameter;
+    }
+
+    /**
+     * Sets the connect and read timeouts for calls to Akismet. The connect timeout also bounds the time spent
+     * waiting for a free pooled connection. A timeout of <code>0</code> means wait indefinitely.
+     *
+     * @param connectionTimeout Time in milliseconds to wait for a connection to be established
+     * @param socketTimeout     Time in milliseconds to wait for data on an established connection
+     * @throws IllegalStateException If this instance belongs to an {@link AkismetRegistry}
+     */
+    public void setTimeouts(int connectionTimeout, int socketTimeout) {
+        checkNotRegistered("Timeouts");
+        transport.setTimeouts(connectionTimeout, socketTimeout);
+    }
+
+    /**
+     * Sets the circuit breaker guarding calls to Akismet. While the breaker is open, comment-check returns the
+     * {@link #setCircuitBreakerFallback(Verdict) fallback verdict} without touching the network, submit-spam and
+     * submit-ham return {@link Verdict#UNKNOWN}, and verify-key fails. Pass <code>null</code> to disable, which is
+     * the default.
+     *
+     * @param circuitBreaker Circuit breaker, may be <code>null</code>
+     */
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * Return the circuit breaker guarding calls to Akismet
+     *
+     * @return Circuit breaker, or <code>null</code> if there is none
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Sets the verdict returned by comment-check while the circuit breaker is open or when the rate limit is
+     * reached. Defaults to {@link Verdict#UNKNOWN}, which the <code>boolean</code> methods report as not spam.
+     *
+     * @param circuitBreakerFallback Fallback verdict
+     */
+    public void setCircuitBreakerFallback(Verdict circuitBreakerFallback) {
+        if (circuitBreakerFallback == null) {
+            throw new IllegalArgumentException("Fallback verdict cannot be null");
+        }
+
+        this.circuitBreakerFallback = circuitBreakerFallback;
+    }
+
+    /**
+     * Sets the token bucket limiting the calls of this instance. Comment-check and verify-key take tokens with
+     * {@link TokenBucket.Priority#INTERACTIVE} priority, submit-spam and submit-ham with
+     * {@link TokenBucket.Priority#BACKGROUND} priority. When no token is available within the
+     * {@link #setRateLimitWait(long) rate limit wait}, comment-check returns the
+     * {@link #setCircuitBreakerFallback(Verdict) fallback verdict}, submit-spam and submit-ham return
+     * {@link Verdict#UNKNOWN}, and verify-key fails.
+     * <p></p>
+     * Pass <code>null</code> to use the bucket {@link TokenBucket#shared(String, double, int) shared} for the API
+     * key, if there is one, which is the default.
+     *
+     * @param rateLimit Token bucket, may be <code>null</code>
+     */
+    public void setRateLimit(TokenBucket rateLimit) {
+        this.rateLimit = rateLimit;
+    }
+
+    /**
+     * Return the token bucket limiting the calls of this instance
+     *
+     * @return Token bucket of this instance or shared for the API key, or <code>null</code> if calls are not limited
+     */
+    public TokenBucket getRateLimit() {
+        TokenBucket bucket = rateLimit;
+        return bucket != null ? bucket : TokenBucket.getShared(apiKey);
+    }
+
+    /**
+     * Sets how long a call waits for a rate limit token. With <code>0</code> calls fail fast when no token is
+     * available. Calls made by a {@link FeedbackQueue} or {@link BulkScanner} always wait. Defaults to
+     * {@link #DEFAULT_RATE_LIMIT_WAIT}.
+     *
+     * @param rateLimitWait Wait in milliseconds
+     */
+    public void setRateLimitWait(long rateLimitWait) {
+        if (rateLimitWait < 0) {
+            throw new IllegalArgumentException("Rate limit wait cannot be negative");
+        }
+
+        this.rateLimitWait = rateLimitWait;
+    }
+
+    /**
+     * Sets the policy for retrying comment-check after connect failures and 5xx answers. Each attempt takes a
+     * rate limit token and passes the circuit breaker. Submit-spam and submit-ham are never retried, since Akismet
+     * would count the feedback twice; use a {@link FeedbackQueue} with a journal instead. Pass <code>null</code>
+     * to disable retries, which is the default.
+     *
+     * @param retryPolicy Retry policy, may be <code>null</code>
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * Return the policy for retrying comment-check
+     *
+     * @return Retry policy, or <code>null</code> if calls are not retried
+     */
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Sets the policy for hedging slow comment-check calls with a second request. Pass <code>null</code> to
+     * disable hedging, which is the default.
+     *
+     * @param hedgePolicy Hedge policy, may be <code>null</code>
+     */
+    public void setHedgePolicy(HedgePolicy hedgePolicy) {
+        this.hedgePolicy = hedgePolicy;
+    }
+
+    /**
+     * Return the policy for hedging slow comment-check calls
+     *
+     * @return Hedge policy, or <code>null</code> if calls are not hedged
+     */
+    public HedgePolicy getHedgePolicy() {
+        return hedgePolicy;
+    }
+
+    /**
+     * Close pooled connections that have been idle for longer than the given timeout. The check runs on a
+     * background daemon thread. Only applies to instances constructed with a connection pool or a pooled
+     * {@link CommonsHttpTransport}.
+     *
+     * @param idleTimeout Time in milliseconds after which an idle connection is closed
+     * @throws IllegalStateException    If this instance does not use a connection pool
+     * @throws IllegalArgumentException If the timeout is less than 1
+     */
+    public void setIdleConnectionTimeout(long idleTimeout) {
+        checkNotRegistered("Idle connection timeout");
+        if (!(transport instanceof CommonsHttpTransport)) {
+            throw new IllegalStateException("Idle connection timeout requires a pooled instance");
+        }
+
+        ((CommonsHttpTransport) transport).setIdleConnectionTimeout(idleTimeout);
+    }
+
+    /**
+     * Sets the executor used for the asynchronous calls. If no executor is set, one is created on first use
+     * with {@link AkismetExecutor#newDefault(int)}. An executor set here is not shut down by {@link #shutdown()}.
+     *
+     * @param asyncExecutor Executor for asynchronous calls
+     */
+    public synchronized void setAsyncExecutor(AkismetExecutor asyncExecutor) {
+        if (ownsAsyncExecutor && this.asyncExecutor != null) {
+            this.asyncExecutor.shutdown();
+        }
+
+        this.asyncExecutor = asyncExecutor;
+        this.ownsAsyncExecutor = false;
+    }
+
+    /**
+     * Sets the cache used to answer repeated comment-check calls with identical parameters. Submitting spam or
+     * ham for a comment removes its cached result. Pass <code>null</code> to disable caching, which is the default.
+     *
+     * @param verdictCache Verdict cache, may be <code>null</code>
+     */
+    public void setVerdictCache(VerdictCache verdictCache) {
+        this.verdictCache = verdictCache;
+    }
+
+    /**
+     * Return the cache used to answer repeated comment-check calls
+     *
+     * @return Verdict cache, or <code>null</code> if caching is disabled
+     */
+    public VerdictCache getVerdictCache() {
+        return verdictCache;
+    }
+
+    /**
+     * Sets the filter run before comment-check. When the filter reaches a definite verdict, Akismet is not called
+     * and the result has an HTTP status of <code>0</code>. Use a {@link PreFilterChain} to run several filters.
+     * Pass <code>null</code> to disable, which is the default.
+     *
+     * @param preFilter Pre-filter, may be <code>null</code>
+     */
+    public void setPreFilter(PreFilter preFilter) {
+        this.preFilter = preFilter;
+    }
+
+    /**
+     * Return the filter run before comment-check
+     *
+     * @return Pre-filter, or <code>null</code> if there is none
+     */
+    public PreFilter getPreFilter() {
+        return preFilter;
+    }
+
+    /**
+     * Sets the cache for {@link #verifyAPIKey()} results. Each instance has its own cache with the default time
+     * to live unless one is set here; a cache can be shared between instances. Pass <code>null</code> to call
+     * verify-key every time.
+     *
+     * @param keyVerificationCache Key verification cache, may be <code>null</code>
+     */
+    public void setKeyVerificationCache(KeyVerificationCache keyVerificationCache) {
+        this.keyVerificationCache = keyVerificationCache;
+    }
+
+    /**
+     * Return the cache for {@link #verifyAPIKey()} results
+     *
+     * @return Key verification cache, or <code>null</code> if results are not cached
+     */
+    public KeyVerificationCache getKeyVerificationCache() {
+        return keyVerificationCache;
+    }
+
+    /**
+     * Sets the listener notified of every call, for example an {@link AkismetStatistics}. Pass <code>null</code>
+     * to disable metrics, which is the default.
+     *
+     * @param metrics Metrics listener, may be <code>null</code>
+     */
+    public void setMetrics(AkismetMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Return the listener notified of every call
+     *
+     * @return Metrics listener, or <code>null</code> if metrics are disabled
+     */
+    public AkismetMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Return the number of connections held by the pool, in use or idle
+     *
+     * @return Number of pooled connections, <code>0</code> if this instance does not pool connections or does not
+     *         use a {@link CommonsHttpTransport}
+     */
+    public int getConnectionsInPool() {
+        if (registry != null) {
+            return registry.getConnectionsInPool();
+        }
+
+        return transport instanceof CommonsHttpTransport ? ((CommonsHttpTransport) transport).getConnectionsInPool() : 0;
+    }
+
+    /**
+     * Return the executor used for the asynchronous calls, creating the default executor if necessary
+     *
+     * @return Executor for asynchronous calls
+     */
+    public synchronized AkismetExecutor getAsyncExecutor() {
+        usePool();
+        if (asyncExecutor == null) {
+            if (registry != null) {
+                return registry.getAsyncExecutor();
+            }
+
+            asyncExecutor = AkismetExecutor.newDefault(AkismetExecutor.DEFAULT_MAX_IN_FLIGHT);
+            ownsAsyncExecutor = true;
+        }
+
+        return asyncExecutor;
+    }
+
+    /**
+     * Make the transport safe for calls from several threads, switching a single connection
+     * {@link CommonsHttpTransport} to a pool
+     */
+    void usePool() {
+        if (transport instanceof CommonsHttpTransport) {
+            ((CommonsHttpTransport) transport).usePool();
+        }
+    }
+
+    /**
+     * Release the resources held by this instance. Pooled connections are closed and the idle connection
+     * thread, if any, is stopped, unless the transport was passed to the constructor. The instance should not be
+     * used afterwards.
+     */
+    public synchronized void shutdown() {
+        if (ownsAsyncExecutor && asyncExecutor != null) {
+            asyncExecutor.shutdown();
+            asyncExecutor = null;
+        }
+
+        if (ownsTransport) {
+            transport.shutdown();
+        }
     }
 
     /**
      * Return the HTTP status code of the last operation
      *
      * @return HTTP status code
+     * @deprecated The last operation is ambiguous when an instance is shared between threads. Use
+     *             {@link AkismetResult#getHttpStatus()} from the per-call result instead.
      */
+    @Deprecated
     public int getHttpResult() {
         return httpResult;
     }
@@ -148,12 +612,23 @@ public class Akismet {
      *
      * @param proxyHost Proxy host
      * @param proxyPort Proxy port
+     * @throws IllegalStateException If this instance belongs to an {@link AkismetRegistry}
      */
     public void setProxyConfiguration(String proxyHost, int proxyPort) {
-        HostConfiguration hostConfiguration = new HostConfiguration();
-        hostConfiguration.setProxy(proxyHost, proxyPort);
+        checkNotRegistered("Proxy configuration");
+        transport.setProxy(proxyHost, proxyPort);
+    }
 
-        httpClient.setHostConfiguration(hostConfiguration);
+    /**
+     * Reject changes to the connection settings of a registry tenant, which are shared with the other tenants
+     *
+     * @param setting Name of the setting, for the exception message
+     * @throws IllegalStateException If this instance belongs to an {@link AkismetRegistry}
+     */
+    private void checkNotRegistered(String setting) {
+        if (registry != null) {
+            throw new IllegalStateException(setting + " is managed by the AkismetRegistry");
+        }
     }
 
     /**
@@ -172,46 +647,122 @@ public class Akismet {
      *
      * @param proxyUsername Username to access proxy
      * @param proxyPassword Password to access proxy
+     * @throws IllegalStateException If this instance belongs to an {@link AkismetRegistry}
      */
     public void setProxyAuthenticationConfiguration(String proxyUsername, String proxyPassword) {
-        httpClient.getState().setProxyCredentials(AuthScope.ANY, new UsernamePasswordCredentials(proxyUsername, proxyPassword));
+        checkNotRegistered("Proxy configuration");
+        transport.setProxyCredentials(proxyUsername, proxyPassword);
     }
 
     /**
      * Verify your API key
+     * <p></p>
+     * The result is cached by the {@link #setKeyVerificationCache(KeyVerificationCache) key verification cache},
+     * so repeated calls only reach Akismet when the cached result has expired.
      *
      * @return <code>true</code> if the API key has been verified, <code>false</code> otherwise
      */
     public boolean verifyAPIKey() {
+        boolean callResult;
+
+        KeyVerificationCache cache = keyVerificationCache;
+        if (cache != null) {
+            callResult = cache.verify(apiKey, blog, keyVerifier);
+        } else {
+            try {
+                callResult = postVerifyKey();
+            } catch (IOException e) {
+                if (logger.isErrorEnabled()) {
+                    logger.error(e);
+                }
+
+                callResult = false;
+            }
+        }
+
+        verifiedKey = callResult;
+
+        return callResult;
+    }
+
+    /**
+     * Call verify-key
+     *
+     * @return <code>true</code> if the API key is valid, <code>false</code> otherwise
+     * @throws IOException If there was a problem communicating with Akismet
+     */
+    private boolean postVerifyKey() throws IOException {
+        CircuitBreaker breaker = circuitBreaker;
+        AkismetMetrics listener = metrics;
+        if (!acquireToken(TokenBucket.Priority.INTERACTIVE, rateLimitWait)) {
+            if (listener != null) {
+                listener.onRateLimited(FUNCTION_VERIFY_KEY);
+            }
+            throw new IOException("Rate limit reached");
+        }
+
+        if (breaker != null && !breaker.allowRequest()) {
+            if (listener != null) {
+                listener.onCircuitOpen(FUNCTION_VERIFY_KEY);
+            }
+            throw new IOException("Circuit breaker is open");
+        }
+
         boolean callResult = true;
+        boolean success = false;
+        int status = 0;
+        Exception exception = null;
+        long start = System.nanoTime();
 
-        PostMethod post = new PostMethod("http://rest.akismet.com/1.1/verify-key");
-        post.addParameter(API_PARAMETER_KEY, apiKey);
-        post.addParameter(API_PARAMETER_BLOG, blog);
+        CommentRequest.FormBuffer buffer = new CommentRequest.FormBuffer(apiKey.length() + blog.length() + 16);
+        buffer.append(API_PARAMETER_KEY, apiKey);
+        buffer.append(API_PARAMETER_BLOG, blog);
 
         try {
-            httpResult = httpClient.executeMethod(post);
-            String result = post.getResponseBodyAsString();
+            AkismetTransport.Response response = transport.post(VERIFY_KEY_URL, NO_PREFIX, buffer.toByteArray());
+            status = response.getStatus();
+            httpResult = status;
+            String result = response.getBody();
 
             if (logger.isDebugEnabled()) {
                 logger.debug("Akismet response: " + result);
             }
 
+            if (status >= HttpURLConnection.HTTP_INTERNAL_ERROR) {
+                throw new IOException("Akismet returned HTTP status " + status);
+            }
+
             if (!checkNullOrBlank(result)) {
                 if (!VALID_RESPONSE.equals(result)) {
                     callResult = false;
                 }
             }
+
+            success = true;
         } catch (IOException e) {
-            if (logger.isErrorEnabled()) {
-                logger.error(e);
+            exception = e;
+            throw e;
+        } catch (RuntimeException e) {
+            exception = e;
+            throw e;
+        } finally {
+            long latency = System.nanoTime() - start;
+            boolean cancelled = exception != null && Thread.currentThread().isInterrupted();
+            if (breaker != null) {
+                if (success) {
+                    breaker.recordSuccess(latency / 1000000);
+                } else if (cancelled) {
+                    breaker.recordCancelled();
+                } else {
+                    breaker.recordFailure(latency / 1000000);
+                }
             }
 
-            callResult = false;
+            if (listener != null && !cancelled) {
+                listener.onCall(FUNCTION_VERIFY_KEY, success ? Verdict.UNKNOWN : Verdict.ERROR, status, latency, exception);
+            }
         }
 
-        verifiedKey = callResult;
-
         return callResult;
     }
 
@@ -233,77 +784,502 @@ public class Akismet {
      */
     protected boolean akismetCall(String function, String ipAddress, String userAgent, String referrer, String permalink, String commentType,
                                   String author, String authorEmail, String authorURL, String commentContent, Map other) {
-        boolean callResult = false;
+        return akismetCall(akismetRequest(function, ipAddress, userAgent, referrer, permalink, commentType, author, authorEmail,
+                authorURL, commentContent, other));
+    }
 
-        String akismetURL = "http://" + apiKey + ".rest.akismet.com/1.1/" + function;
+    /**
+     * Generic call to Akismet
+     *
+     * @param function Function used in constructing the URL to Akismet for the proper function to call. Either "comment-check", "submit-spam", or "submit-ham".
+     * @param request  Comment
+     * @return <code>true</code> if the comment is identified by Akismet as spam, <code>false</code> otherwise
+     */
+    protected boolean akismetCall(String function, CommentRequest request) {
+        return akismetCall(akismetRequest(function, request));
+    }
 
-        PostMethod post = new PostMethod(akismetURL);
-        post.addRequestHeader("Content-Type", "application/x-www-form-urlencoded; charset=utf-8");
-        post.addParameter(new NameValuePair(API_PARAMETER_BLOG, blog));
-        if (ipAddress != null) {
-            post.addParameter(new NameValuePair(API_PARAMETER_USER_IP, ipAddress));
-        } else {
-            post.addParameter(new NameValuePair(API_PARAMETER_USER_IP, ""));
+    /**
+     * Reduce a result to the boolean returned by the original API. Errors count as spam, as they always have,
+     * except for a blank or <code>false</code> response body.
+     *
+     * @param akismetResult Result of the call
+     * @return <code>true</code> if the comment is identified by Akismet as spam or the call failed, <code>false</code> otherwise
+     */
+    private boolean akismetCall(AkismetResult akismetResult) {
+        if (akismetResult.getException() != null) {
+            return true;
         }
-        if (userAgent != null) {
-            post.addParameter(new NameValuePair(API_PARAMETER_USER_AGENT, userAgent));
+
+        String body = akismetResult.getResponseBody();
+        if (!akismetResult.isError() || checkNullOrBlank(body)) {
+            return akismetResult.isSpam();
         }
-        if (referrer != null) {
-            post.addParameter(new NameValuePair(API_PARAMETER_REFERRER, referrer));
+
+        return !FALSE_RESPONSE.equals(body);
+    }
+
+    /**
+     * Generic call to Akismet returning the result of this call
+     *
+     * @param function       Function used in constructing the URL to Akismet for the proper function to call. Either "comment-check", "submit-spam", or "submit-ham".
+     * @param ipAddress      IP address of the comment submitter
+     * @param userAgent      User agent information
+     * @param referrer       The content of the HTTP_REFERER header should be sent here
+     * @param permalink      The permanent location of the entry the comment was submitted to
+     * @param commentType    May be blank, comment, trackback, pingback, or a made up value like "registration"
+     * @param author         Submitted name with the comment
+     * @param authorEmail    Submitted email address
+     * @param authorURL      Commenter URL
+     * @param commentContent The content that was submitted
+     * @param other          In PHP there is an array of enviroment variables called $_SERVER which contains information about the web server itself as well as a key/value for every HTTP header sent with the request. This data is highly useful to Akismet as how the submited content interacts with the server can be very telling, so please include as much information as possible.
+     * @return Result of the call
+     */
+    protected AkismetResult akismetRequest(String function, String ipAddress, String userAgent, String referrer, String permalink, String commentType,
+                                           String author, String authorEmail, String authorURL, String commentContent, Map other) {
+        return akismetRequest(function, CommentRequest.of(ipAddress, userAgent, referrer, permalink, commentType, author,
+                authorEmail, authorURL, commentContent, other));
+    }
+
+    /**
+     * Generic call to Akismet returning the result of this call
+     *
+     * @param function Function used in constructing the URL to Akismet for the proper function to call. Either "comment-check", "submit-spam", or "submit-ham".
+     * @param request  Comment
+     * @return Result of the call
+     */
+    protected AkismetResult akismetRequest(String function, CommentRequest request) {
+        return akismetRequest(function, request, FUNCTION_COMMENT_CHECK.equals(function) ? TokenBucket.Priority.INTERACTIVE
+                : TokenBucket.Priority.BACKGROUND, rateLimitWait);
+    }
+
+    /**
+     * Generic call to Akismet returning the result of this call
+     *
+     * @param function      Function used in constructing the URL to Akismet for the proper function to call. Either "comment-check", "submit-spam", or "submit-ham".
+     * @param request       Comment
+     * @param priority      Priority for the rate limit
+     * @param rateLimitWait Time in milliseconds to wait for a rate limit token
+     * @return Result of the call
+     */
+    AkismetResult akismetRequest(String function, CommentRequest request, TokenBucket.Priority priority, long rateLimitWait) {
+        AkismetResult akismetResult = localResult(function, request);
+        if (akismetResult != null) {
+            return akismetResult;
+        }
+
+        akismetResult = execute(function, request, priority, rateLimitWait);
+        updateCache(function, request, akismetResult);
+        return akismetResult;
+    }
+
+    /**
+     * Answer a comment-check without calling Akismet, from the pre-filter or the verdict cache, if there are any
+     *
+     * @param function Function to call. Either "comment-check", "submit-spam", or "submit-ham".
+     * @param request  Comment
+     * @return Result, or <code>null</code> if Akismet must be called
+     */
+    private AkismetResult localResult(String function, CommentRequest request) {
+        if (!FUNCTION_COMMENT_CHECK.equals(function)) {
+            return null;
+        }
+
+        PreFilter filter = preFilter;
+        if (filter != null) {
+            Verdict verdict = filter.filter(request);
+            if (verdict != Verdict.UNKNOWN) {
+                AkismetMetrics listener = metrics;
+                if (listener != null) {
+                    listener.onPreFilter(verdict);
+                }
+                return new AkismetResult(0, null, verdict);
+            }
+        }
+
+        VerdictCache cache = verdictCache;
+        if (cache == null) {
+            return null;
+        }
+
+        AkismetResult cached = cache.get(blog, request);
+        if (cached != null) {
+            AkismetMetrics listener = metrics;
+            if (listener != null) {
+                listener.onCacheHit(cached.getVerdict());
+            }
+        }
+
+        return cached;
+    }
+
+    /**
+     * Update the verdict cache, if there is one, with the result of a call to Akismet
+     *
+     * @param function      Function called
+     * @param request       Comment
+     * @param akismetResult Result of the call
+     */
+    private void updateCache(String function, CommentRequest request, AkismetResult akismetResult) {
+        VerdictCache cache = verdictCache;
+        if (cache == null) {
+            return;
         }
-        if (permalink != null) {
-            post.addParameter(new NameValuePair(API_PARAMETER_PERMALINK, permalink));
+
+        if (FUNCTION_COMMENT_CHECK.equals(function)) {
+            // Only cache definite answers, never errors or "invalid"
+            if (akismetResult.getHttpStatus() == HttpURLConnection.HTTP_OK
+                    && akismetResult.getVerdict() != Verdict.ERROR && akismetResult.getVerdict() != Verdict.UNKNOWN) {
+                cache.put(blog, request, akismetResult);
+            }
+        } else {
+            cache.invalidate(blog, request);
+        }
+    }
+
+    /**
+     * Call Akismet, hedging and retrying comment-check according to the policies, if there are any
+     *
+     * @param function      Function to call. Either "comment-check", "submit-spam", or "submit-ham".
+     * @param request       Comment
+     * @param priority      Priority for the rate limit
+     * @param rateLimitWait Time in milliseconds to wait for a rate limit token
+     * @return Result of the call
+     */
+    private AkismetResult execute(final String function, final CommentRequest request, final TokenBucket.Priority priority,
+                                  final long rateLimitWait) {
+        if (!FUNCTION_COMMENT_CHECK.equals(function)) {
+            return attempt(function, request, priority, rateLimitWait);
         }
-        if (commentType != null) {
-            post.addParameter(new NameValuePair(API_PARAMETER_COMMENT_TYPE, commentType));
+
+        final HedgePolicy hedge = hedgePolicy;
+        if (hedge == null) {
+            return retry(function, request, priority, rateLimitWait);
         }
-        if (author != null) {
-            post.addParameter(new NameValuePair(API_PARAMETER_COMMENT_AUTHOR, author));
+
+        final Hedge hedged = new Hedge(Thread.currentThread());
+        hedge.onCall();
+        ScheduledFuture<?> timer = HedgePolicy.schedule(new Runnable() {
+            public void run() {
+                sendHedge(hedged, hedge, function, request, priority, rateLimitWait);
+            }
+        }, hedge.getDelay());
+
+        AkismetResult akismetResult;
+        try {
+            akismetResult = retry(function, request, priority, rateLimitWait);
+        } finally {
+            timer.cancel(false);
         }
-        if (authorEmail != null) {
-            post.addParameter(new NameValuePair(API_PARAMETER_COMMENT_AUTHOR_EMAIL, authorEmail));
+
+        AkismetResult hedgeResult = hedged.finish();
+        if (hedgeResult != null) {
+            return hedgeResult;
         }
-        if (authorURL != null) {
-            post.addParameter(new NameValuePair(API_PARAMETER_COMMENT_AUTHOR_URL, authorURL));
+
+        if (akismetResult.getHttpStatus() == HttpURLConnection.HTTP_OK) {
+            hedge.record(akismetResult.getLatency());
         }
-        if (commentContent != null) {
-            post.addParameter(new NameValuePair(API_PARAMETER_COMMENT_CONTENT, commentContent));
+
+        Future<AkismetResult> second = hedged.getFuture();
+        if (akismetResult.isError() && second != null) {
+            // Prefer an answer from the hedge over an error
+            try {
+                AkismetResult other = second.get();
+                if (!other.isError()) {
+                    akismetResult = other;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                if (logger.isErrorEnabled()) {
+                    logger.error(e.getCause());
+                }
+            }
         }
 
-        if (other != null && other.size() > 0) {
-            Iterator keyIterator = other.keySet().iterator();
-            while (keyIterator.hasNext()) {
-                String key = (String) keyIterator.next();
-                if ((key != null) && (other.get(key) != null)) {
-                    post.addParameter(new NameValuePair(key, other.get(key).toString()));
+        return akismetResult;
+    }
+
+    /**
+     * Send the hedge of a comment-check whose first request has not been answered within the hedge delay. An
+     * answer from the hedge aborts the first request.
+     *
+     * @param hedged        State of the hedged call
+     * @param hedge         Hedge policy
+     * @param function      Function to call
+     * @param request       Comment
+     * @param priority      Priority for the rate limit
+     * @param rateLimitWait Time in milliseconds to wait for a rate limit token
+     */
+    private void sendHedge(final Hedge hedged, final HedgePolicy hedge, final String function, final CommentRequest request,
+                           final TokenBucket.Priority priority, final long rateLimitWait) {
+        Callable<AkismetResult> call = new Callable<AkismetResult>() {
+            public AkismetResult call() {
+                AkismetResult akismetResult = retry(function, request, priority, rateLimitWait);
+                if (akismetResult.getHttpStatus() == HttpURLConnection.HTTP_OK) {
+                    hedge.record(akismetResult.getLatency());
                 }
+                if (!akismetResult.isError() && hedged.win(akismetResult)) {
+                    if (transport instanceof CommonsHttpTransport) {
+                        ((CommonsHttpTransport) transport).abort(hedged.caller);
+                    }
+                }
+                return akismetResult;
+            }
+        };
+
+        synchronized (hedged) {
+            if (hedged.finished || !hedge.tryHedge()) {
+                return;
             }
+
+            // Never wait for a slot here, the timer is shared
+            hedged.future = getAsyncExecutor().trySubmit(call, null);
         }
+    }
 
-        try {
-            httpResult = httpClient.executeMethod(post);
-            String result = post.getResponseBodyAsString();
+    /**
+     * Call Akismet, retrying according to the retry policy, if there is one
+     *
+     * @param function      Function to call. Either "comment-check", "submit-spam", or "submit-ham".
+     * @param request       Comment
+     * @param priority      Priority for the rate limit
+     * @param rateLimitWait Time in milliseconds to wait for a rate limit token
+     * @return Result of the last attempt
+     */
+    private AkismetResult retry(String function, CommentRequest request, TokenBucket.Priority priority, long rateLimitWait) {
+        RetryPolicy retry = retryPolicy;
+        if (retry == null) {
+            return attempt(function, request, priority, rateLimitWait);
+        }
 
+        retry.onCall();
+        int attempt = 1;
+        while (true) {
+            AkismetResult akismetResult = attempt(function, request, priority, rateLimitWait);
+            if (akismetResult.isCancelled() || !retry.shouldRetry(attempt, akismetResult)) {
+                return akismetResult;
+            }
+
+            long delay = retry.getDelay(attempt);
             if (logger.isDebugEnabled()) {
-                logger.debug("Akismet response: " + result);
+                logger.debug("Retrying Akismet " + function + " in " + delay + "ms after " + akismetResult);
             }
 
-            if (!checkNullOrBlank(result)) {
-                result = result.trim();
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return akismetResult;
+            }
+            attempt++;
+        }
+    }
 
-                if (!FALSE_RESPONSE.equals(result)) {
-                    callResult = true;
-                }
+    /**
+     * Make one attempt to call Akismet within the rate limit and through the circuit breaker, if there are any
+     *
+     * @param function      Function to call. Either "comment-check", "submit-spam", or "submit-ham".
+     * @param request       Comment
+     * @param priority      Priority for the rate limit
+     * @param rateLimitWait Time in milliseconds to wait for a rate limit token
+     * @return Result of the call
+     */
+    private AkismetResult attempt(String function, CommentRequest request, TokenBucket.Priority priority, long rateLimitWait) {
+        if (!acquireToken(priority, rateLimitWait)) {
+            AkismetMetrics listener = metrics;
+            if (listener != null) {
+                listener.onRateLimited(function);
+            }
+            return AkismetResult.fallback(FUNCTION_COMMENT_CHECK.equals(function) ? circuitBreakerFallback : Verdict.UNKNOWN);
+        }
+
+        CircuitBreaker breaker = circuitBreaker;
+        if (breaker == null) {
+            return post(function, request);
+        }
+
+        if (!breaker.allowRequest()) {
+            AkismetMetrics listener = metrics;
+            if (listener != null) {
+                listener.onCircuitOpen(function);
             }
+            return AkismetResult.fallback(FUNCTION_COMMENT_CHECK.equals(function) ? circuitBreakerFallback : Verdict.UNKNOWN);
+        }
+
+        long start = System.currentTimeMillis();
+        AkismetResult akismetResult = null;
+        try {
+            akismetResult = post(function, request);
+        } finally {
+            // Always record the outcome, so that a half-open probe returns its permit
+            record(breaker, akismetResult, System.currentTimeMillis() - start);
+        }
+
+        return akismetResult;
+    }
+
+    /**
+     * Record the outcome of a call with the circuit breaker
+     *
+     * @param breaker       Circuit breaker
+     * @param akismetResult Result of the call, <code>null</code> if the call failed unexpectedly
+     * @param duration      Duration of the call in milliseconds
+     */
+    private static void record(CircuitBreaker breaker, AkismetResult akismetResult, long duration) {
+        if (akismetResult != null && akismetResult.isCancelled()) {
+            breaker.recordCancelled();
+        } else if (akismetResult == null || akismetResult.getHttpStatus() == 0
+                || akismetResult.getHttpStatus() >= HttpURLConnection.HTTP_INTERNAL_ERROR) {
+            breaker.recordFailure(duration);
+        } else {
+            breaker.recordSuccess(duration);
+        }
+    }
+
+    /**
+     * Take a rate limit token, if calls are limited
+     *
+     * @param priority      Priority of the call
+     * @param rateLimitWait Time in milliseconds to wait for a token, <code>0</code> to fail fast
+     * @return <code>true</code> if the call may be made, <code>false</code> otherwise
+     */
+    private boolean acquireToken(TokenBucket.Priority priority, long rateLimitWait) {
+        TokenBucket bucket = getRateLimit();
+        if (bucket == null) {
+            return true;
+        }
+
+        if (rateLimitWait == 0) {
+            return bucket.tryAcquire(priority);
+        }
+
+        try {
+            return bucket.tryAcquire(priority, rateLimitWait, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Post a call to Akismet. The encoded blog parameter and the pre-encoded body of the request are handed
+     * to the transport without copying.
+     *
+     * @param function Function to call. Either "comment-check", "submit-spam", or "submit-ham".
+     * @param request  Comment
+     * @return Result of the call
+     */
+    private AkismetResult post(String function, CommentRequest request) {
+        AkismetTransport.Response response = null;
+        Exception exception = null;
+
+        long start = System.nanoTime();
+        try {
+            response = transport.post(restURL + function, blogParameter, request.body());
         } catch (IOException e) {
+            exception = e;
+        } catch (RuntimeException e) {
+            // A failing transport counts as a failed call rather than escaping the breaker and the metrics
+            exception = e;
+        }
+
+        // An interrupted call was cancelled by the caller, not failed by Akismet or the network
+        return toResult(function, response, exception, System.nanoTime() - start,
+                exception != null && Thread.currentThread().isInterrupted());
+    }
+
+    /**
+     * Build the result of a call, logging failures and notifying the metrics
+     *
+     * @param function  Function called
+     * @param response  Response, <code>null</code> if none was received
+     * @param exception Exception that made the call fail, <code>null</code> if a response was received
+     * @param latency   Time the call took in nanoseconds
+     * @param cancelled <code>true</code> if the call was cancelled by the caller
+     * @return Result of the call
+     */
+    private AkismetResult toResult(String function, AkismetTransport.Response response, Exception exception, long latency,
+                                   boolean cancelled) {
+        if (response == null) {
+            if (cancelled) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Akismet " + function + " cancelled: " + exception);
+                }
+                return AkismetResult.cancelled(latency, exception);
+            }
+
             if (logger.isErrorEnabled()) {
-                logger.error(e);
+                logger.error(exception);
+            }
+
+            AkismetMetrics listener = metrics;
+            if (listener != null) {
+                listener.onCall(function, Verdict.ERROR, 0, latency, exception);
             }
 
-            callResult = true;
+            return new AkismetResult(0, null, Verdict.ERROR, null, latency, exception);
         }
 
-        return callResult;
+        int status = response.getStatus();
+        httpResult = status;
+        String result = response.getBody();
+        Map<String, String> headers = response.getHeaders();
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Akismet response: " + result);
+        }
+
+        if (!checkNullOrBlank(result)) {
+            result = result.trim();
+        }
+
+        Verdict verdict = verdict(function, status, result, headers);
+
+        if (verdict == Verdict.ERROR && logger.isErrorEnabled()) {
+            logger.error("Akismet " + function + " failed with status " + status + ": " + result
+                    + (headers != null && headers.containsKey(AkismetResult.HEADER_DEBUG_HELP) ? " (" + headers.get(AkismetResult.HEADER_DEBUG_HELP) + ")" : ""));
+        }
+
+        AkismetMetrics listener = metrics;
+        if (listener != null) {
+            listener.onCall(function, verdict, status, latency, null);
+        }
+
+        return new AkismetResult(status, result, verdict, headers, latency, null);
+    }
+
+    /**
+     * Interpret the response to a call
+     *
+     * @param function Function called
+     * @param status   HTTP status code
+     * @param result   Trimmed response body
+     * @param headers  Akismet response headers, may be <code>null</code>
+     * @return Verdict, {@link Verdict#UNKNOWN} for a successful submit
+     */
+    private Verdict verdict(String function, int status, String result, Map<String, String> headers) {
+        if (status != HttpURLConnection.HTTP_OK) {
+            return Verdict.ERROR;
+        }
+
+        if (!FUNCTION_COMMENT_CHECK.equals(function)) {
+            return Verdict.UNKNOWN;
+        }
+
+        if (TRUE_RESPONSE.equals(result)) {
+            if (headers != null && DISCARD_PRO_TIP.equals(headers.get(AkismetResult.HEADER_PRO_TIP))) {
+                return Verdict.DISCARD;
+            }
+            return Verdict.SPAM;
+        }
+
+        if (FALSE_RESPONSE.equals(result)) {
+            return Verdict.HAM;
+        }
+
+        return Verdict.ERROR;
     }
 
     /**
@@ -323,7 +1299,7 @@ public class Akismet {
      */
     public boolean commentCheck(String ipAddress, String userAgent, String referrer, String permalink, String commentType,
                                 String author, String authorEmail, String authorURL, String commentContent, Map other) {
-        return akismetCall("comment-check", ipAddress, userAgent, referrer, permalink, commentType, author, authorEmail,
+        return akismetCall(FUNCTION_COMMENT_CHECK, ipAddress, userAgent, referrer, permalink, commentType, author, authorEmail,
                 authorURL, commentContent, other);
     }
 
@@ -344,7 +1320,7 @@ public class Akismet {
      */
     public void submitSpam(String ipAddress, String userAgent, String referrer, String permalink, String commentType,
                            String author, String authorEmail, String authorURL, String commentContent, Map other) {
-        akismetCall("submit-spam", ipAddress, userAgent, referrer, permalink, commentType, author, authorEmail,
+        akismetCall(FUNCTION_SUBMIT_SPAM, ipAddress, userAgent, referrer, permalink, commentType, author, authorEmail,
                 authorURL, commentContent, other);
     }
 
@@ -365,7 +1341,400 @@ public class Akismet {
      */
     public void submitHam(String ipAddress, String userAgent, String referrer, String permalink, String commentType,
                           String author, String authorEmail, String authorURL, String commentContent, Map other) {
-        akismetCall("submit-ham", ipAddress, userAgent, referrer, permalink, commentType, author, authorEmail,
+        akismetCall(FUNCTION_SUBMIT_HAM, ipAddress, userAgent, referrer, permalink, commentType, author, authorEmail,
                 authorURL, commentContent, other);
     }
+
+    /**
+     * Same as {@link #commentCheck(String, String, String, String, String, String, String, String, String, java.util.Map)},
+     * but returns the result of this call rather than recording it on the instance.
+     *
+     * @param ipAddress      IP address of the comment submitter
+     * @param userAgent      User agent information
+     * @param referrer       The content of the HTTP_REFERER header should be sent here
+     * @param permalink      The permanent location of the entry the comment was submitted to
+     * @param commentType    May be blank, comment, trackback, pingback, or a made up value like "registration"
+     * @param author         Submitted name with the comment
+     * @param authorEmail    Submitted email address
+     * @param authorURL      Commenter URL
+     * @param commentContent The content that was submitted
+     * @param other          Additional key/value information about the request, see {@link #commentCheck(String, String, String, String, String, String, String, String, String, java.util.Map)}
+     * @return Result of the call
+     */
+    public AkismetResult commentCheckResult(String ipAddress, String userAgent, String referrer, String permalink, String commentType,
+                                            String author, String authorEmail, String authorURL, String commentContent, Map other) {
+        return akismetRequest(FUNCTION_COMMENT_CHECK, ipAddress, userAgent, referrer, permalink, commentType, author, authorEmail,
+                authorURL, commentContent, other);
+    }
+
+    /**
+     * Same as {@link #submitSpam(String, String, String, String, String, String, String, String, String, java.util.Map)},
+     * but returns the result of this call rather than recording it on the instance.
+     *
+     * @param ipAddress      IP address of the comment submitter
+     * @param userAgent      User agent information
+     * @param referrer       The content of the HTTP_REFERER header should be sent here
+     * @param permalink      The permanent location of the entry the comment was submitted to
+     * @param commentType    May be blank, comment, trackback, pingback, or a made up value like "registration"
+     * @param author         Submitted name with the comment
+     * @param authorEmail    Submitted email address
+     * @param authorURL      Commenter URL
+     * @param commentContent The content that was submitted
+     * @param other          Additional key/value information about the request, see {@link #commentCheck(String, String, String, String, String, String, String, String, String, java.util.Map)}
+     * @return Result of the call
+     */
+    public AkismetResult submitSpamResult(String ipAddress, String userAgent, String referrer, String permalink, String commentType,
+                                          String author, String authorEmail, String authorURL, String commentContent, Map other) {
+        return akismetRequest(FUNCTION_SUBMIT_SPAM, ipAddress, userAgent, referrer, permalink, commentType, author, authorEmail,
+                authorURL, commentContent, other);
+    }
+
+    /**
+     * Same as {@link #submitHam(String, String, String, String, String, String, String, String, String, java.util.Map)},
+     * but returns the result of this call rather than recording it on the instance.
+     *
+     * @param ipAddress      IP address of the comment submitter
+     * @param userAgent      User agent information
+     * @param referrer       The content of the HTTP_REFERER header should be sent here
+     * @param permalink      The permanent location of the entry the comment was submitted to
+     * @param commentType    May be blank, comment, trackback, pingback, or a made up value like "registration"
+     * @param author         Submitted name with the comment
+     * @param authorEmail    Submitted email address
+     * @param authorURL      Commenter URL
+     * @param commentContent The content that was submitted
+     * @param other          Additional key/value information about the request, see {@link #commentCheck(String, String, String, String, String, String, String, String, String, java.util.Map)}
+     * @return Result of the call
+     */
+    public AkismetResult submitHamResult(String ipAddress, String userAgent, String referrer, String permalink, String commentType,
+                                         String author, String authorEmail, String authorURL, String commentContent, Map other) {
+        return akismetRequest(FUNCTION_SUBMIT_HAM, ipAddress, userAgent, referrer, permalink, commentType, author, authorEmail,
+                authorURL, commentContent, other);
+    }
+
+    /**
+     * Submit a call to Akismet on the asynchronous executor. With a {@link JdkHttpTransport} the request is sent
+     * without blocking a thread of the executor, unless the call has to wait for a rate limit token or is retried
+     * or hedged.
+     *
+     * @param function Function to call. Either "comment-check", "submit-spam", or "submit-ham".
+     * @param request  Comment
+     * @param callback Callback notified when the call completes, may be <code>null</code>
+     * @return Future for the result of the call
+     */
+    protected Future<AkismetResult> akismetRequestAsync(final String function, final CommentRequest request, AkismetCallback callback) {
+        final AkismetExecutor executor = getAsyncExecutor();
+        final Callable<AkismetResult> call = new Callable<AkismetResult>() {
+            public AkismetResult call() {
+                return akismetRequest(function, request);
+            }
+        };
+
+        if (!(transport instanceof JdkHttpTransport)) {
+            return executor.submit(call, callback);
+        }
+
+        return executor.submitAsync(new Callable<CompletableFuture<AkismetResult>>() {
+            public CompletableFuture<AkismetResult> call() {
+                return sendAsync(function, request, executor.getExecutorService());
+            }
+        }, callback);
+    }
+
+    /**
+     * Start a call to Akismet through the non-blocking API of the {@link JdkHttpTransport}. Calls that would block,
+     * waiting for a rate limit token or between retries and hedges, run on the executor service instead.
+     *
+     * @param function        Function to call. Either "comment-check", "submit-spam", or "submit-ham".
+     * @param request         Comment
+     * @param executorService Executor service for calls that block
+     * @return Future for the result of the call
+     */
+    private CompletableFuture<AkismetResult> sendAsync(final String function, final CommentRequest request,
+                                                       ExecutorService executorService) {
+        AkismetResult local = localResult(function, request);
+        if (local != null) {
+            return CompletableFuture.completedFuture(local);
+        }
+
+        boolean commentCheck = FUNCTION_COMMENT_CHECK.equals(function);
+        final TokenBucket.Priority priority = commentCheck ? TokenBucket.Priority.INTERACTIVE : TokenBucket.Priority.BACKGROUND;
+        final long wait = rateLimitWait;
+        boolean policies = commentCheck && (retryPolicy != null || hedgePolicy != null);
+        if (policies || !acquireToken(priority, 0)) {
+            if (!policies && wait == 0) {
+                AkismetMetrics listener = metrics;
+                if (listener != null) {
+                    listener.onRateLimited(function);
+                }
+                return CompletableFuture.completedFuture(AkismetResult.fallback(commentCheck ? circuitBreakerFallback : Verdict.UNKNOWN));
+            }
+
+            return CompletableFuture.supplyAsync(new Supplier<AkismetResult>() {
+                public AkismetResult get() {
+                    AkismetResult akismetResult = execute(function, request, priority, wait);
+                    updateCache(function, request, akismetResult);
+                    return akismetResult;
+                }
+            }, executorService);
+        }
+
+        final CircuitBreaker breaker = circuitBreaker;
+        if (breaker != null && !breaker.allowRequest()) {
+            AkismetMetrics listener = metrics;
+            if (listener != null) {
+                listener.onCircuitOpen(function);
+            }
+            return CompletableFuture.completedFuture(AkismetResult.fallback(commentCheck ? circuitBreakerFallback : Verdict.UNKNOWN));
+        }
+
+        final long start = System.nanoTime();
+        CompletableFuture<AkismetTransport.Response> response;
+        try {
+            response = ((JdkHttpTransport) transport).postAsync(restURL + function, blogParameter, request.body());
+        } catch (RuntimeException e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+
+        return response.handle(new BiFunction<AkismetTransport.Response, Throwable, AkismetResult>() {
+            public AkismetResult apply(AkismetTransport.Response received, Throwable t) {
+                long latency = System.nanoTime() - start;
+                Exception exception = null;
+                if (t != null) {
+                    Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+                    exception = cause instanceof Exception ? (Exception) cause : new ExecutionException(cause);
+                }
+
+                AkismetResult akismetResult = toResult(function, received, exception, latency, false);
+                if (breaker != null) {
+                    record(breaker, akismetResult, latency / 1000000);
+                }
+                updateCache(function, request, akismetResult);
+                return akismetResult;
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of {@link #commentCheck(String, String, String, String, String, String, String, String, String, java.util.Map)}.
+     * The call runs on the {@link #getAsyncExecutor() asynchronous executor}.
+     *
+     * @param ipAddress      IP address of the comment submitter
+     * @param userAgent      User agent information
+     * @param referrer       The content of the HTTP_REFERER header should be sent here
+     * @param permalink      The permanent location of the entry the comment was submitted to
+     * @param commentType    May be blank, comment, trackback, pingback, or a made up value like "registration"
+     * @param author         Submitted name with the comment
+     * @param authorEmail    Submitted email address
+     * @param authorURL      Commenter URL
+     * @param commentContent The content that was submitted
+     * @param other          Additional key/value information about the request, see {@link #commentCheck(String, String, String, String, String, String, String, String, String, java.util.Map)}
+     * @param callback Callback notified when the call completes, may be <code>null</code>
+     * @return Future for the result of the call
+     * @throws java.util.concurrent.RejectedExecutionException If too many calls are in flight
+     */
+    public Future<AkismetResult> commentCheckAsync(String ipAddress, String userAgent, String referrer, String permalink, String commentType,
+                                      String author, String authorEmail, String authorURL, String commentContent, Map other,
+                                      AkismetCallback callback) {
+        return akismetRequestAsync(FUNCTION_COMMENT_CHECK, CommentRequest.of(ipAddress, userAgent, referrer, permalink, commentType, author,
+                authorEmail, authorURL, commentContent, other), callback);
+    }
+
+    /**
+     * Asynchronous version of {@link #submitSpam(String, String, String, String, String, String, String, String, String, java.util.Map)}.
+     * The call runs on the {@link #getAsyncExecutor() asynchronous executor}.
+     *
+     * @param ipAddress      IP address of the comment submitter
+     * @param userAgent      User agent information
+     * @param referrer       The content of the HTTP_REFERER header should be sent here
+     * @param permalink      The permanent location of the entry the comment was submitted to
+     * @param commentType    May be blank, comment, trackback, pingback, or a made up value like "registration"
+     * @param author         Submitted name with the comment
+     * @param authorEmail    Submitted email address
+     * @param authorURL      Commenter URL
+     * @param commentContent The content that was submitted
+     * @param other          Additional key/value information about the request, see {@link #commentCheck(String, String, String, String, String, String, String, String, String, java.util.Map)}
+     * @param callback Callback notified when the call completes, may be <code>null</code>
+     * @return Future for the result of the call
+     * @throws java.util.concurrent.RejectedExecutionException If too many calls are in flight
+     */
+    public Future<AkismetResult> submitSpamAsync(String ipAddress, String userAgent, String referrer, String permalink, String commentType,
+                                      String author, String authorEmail, String authorURL, String commentContent, Map other,
+                                      AkismetCallback callback) {
+        return akismetRequestAsync(FUNCTION_SUBMIT_SPAM, CommentRequest.of(ipAddress, userAgent, referrer, permalink, commentType, author,
+                authorEmail, authorURL, commentContent, other), callback);
+    }
+
+    /**
+     * Asynchronous version of {@link #submitHam(String, String, String, String, String, String, String, String, String, java.util.Map)}.
+     * The call runs on the {@link #getAsyncExecutor() asynchronous executor}.
+     *
+     * @param ipAddress      IP address of the comment submitter
+     * @param userAgent      User agent information
+     * @param referrer       The content of the HTTP_REFERER header should be sent here
+     * @param permalink      The permanent location of the entry the comment was submitted to
+     * @param commentType    May be blank, comment, trackback, pingback, or a made up value like "registration"
+     * @param author         Submitted name with the comment
+     * @param authorEmail    Submitted email address
+     * @param authorURL      Commenter URL
+     * @param commentContent The content that was submitted
+     * @param other          Additional key/value information about the request, see {@link #commentCheck(String, String, String, String, String, String, String, String, String, java.util.Map)}
+     * @param callback Callback notified when the call completes, may be <code>null</code>
+     * @return Future for the result of the call
+     * @throws java.util.concurrent.RejectedExecutionException If too many calls are in flight
+     */
+    public Future<AkismetResult> submitHamAsync(String ipAddress, String userAgent, String referrer, String permalink, String commentType,
+                                      String author, String authorEmail, String authorURL, String commentContent, Map other,
+                                      AkismetCallback callback) {
+        return akismetRequestAsync(FUNCTION_SUBMIT_HAM, CommentRequest.of(ipAddress, userAgent, referrer, permalink, commentType, author,
+                authorEmail, authorURL, commentContent, other), callback);
+    }
+
+    /**
+     * Same as {@link #commentCheck(String, String, String, String, String, String, String, String, String, java.util.Map)},
+     * taking a {@link CommentRequest}.
+     *
+     * @param request Comment
+     * @return <code>true</code> if the comment is identified by Akismet as spam, <code>false</code> otherwise
+     */
+    public boolean commentCheck(CommentRequest request) {
+        return akismetCall(FUNCTION_COMMENT_CHECK, request);
+    }
+
+    /**
+     * Same as {@link #submitSpam(String, String, String, String, String, String, String, String, String, java.util.Map)},
+     * taking a {@link CommentRequest}.
+     *
+     * @param request Comment
+     */
+    public void submitSpam(CommentRequest request) {
+        akismetCall(FUNCTION_SUBMIT_SPAM, request);
+    }
+
+    /**
+     * Same as {@link #submitHam(String, String, String, String, String, String, String, String, String, java.util.Map)},
+     * taking a {@link CommentRequest}.
+     *
+     * @param request Comment
+     */
+    public void submitHam(CommentRequest request) {
+        akismetCall(FUNCTION_SUBMIT_HAM, request);
+    }
+
+    /**
+     * Same as {@link #commentCheck(CommentRequest)}, but returns the result of this call.
+     *
+     * @param request Comment
+     * @return Result of the call
+     */
+    public AkismetResult commentCheckResult(CommentRequest request) {
+        return akismetRequest(FUNCTION_COMMENT_CHECK, request);
+    }
+
+    /**
+     * Same as {@link #submitSpam(CommentRequest)}, but returns the result of this call.
+     *
+     * @param request Comment
+     * @return Result of the call
+     */
+    public AkismetResult submitSpamResult(CommentRequest request) {
+        return akismetRequest(FUNCTION_SUBMIT_SPAM, request);
+    }
+
+    /**
+     * Same as {@link #submitHam(CommentRequest)}, but returns the result of this call.
+     *
+     * @param request Comment
+     * @return Result of the call
+     */
+    public AkismetResult submitHamResult(CommentRequest request) {
+        return akismetRequest(FUNCTION_SUBMIT_HAM, request);
+    }
+
+    /**
+     * Asynchronous version of {@link #commentCheck(CommentRequest)}.
+     *
+     * @param request  Comment
+     * @param callback Callback notified when the call completes, may be <code>null</code>
+     * @return Future for the result of the call
+     * @throws java.util.concurrent.RejectedExecutionException If too many calls are in flight
+     */
+    public Future<AkismetResult> commentCheckAsync(CommentRequest request, AkismetCallback callback) {
+        return akismetRequestAsync(FUNCTION_COMMENT_CHECK, request, callback);
+    }
+
+    /**
+     * Asynchronous version of {@link #submitSpam(CommentRequest)}.
+     *
+     * @param request  Comment
+     * @param callback Callback notified when the call completes, may be <code>null</code>
+     * @return Future for the result of the call
+     * @throws java.util.concurrent.RejectedExecutionException If too many calls are in flight
+     */
+    public Future<AkismetResult> submitSpamAsync(CommentRequest request, AkismetCallback callback) {
+        return akismetRequestAsync(FUNCTION_SUBMIT_SPAM, request, callback);
+    }
+
+    /**
+     * Asynchronous version of {@link #submitHam(CommentRequest)}.
+     *
+     * @param request  Comment
+     * @param callback Callback notified when the call completes, may be <code>null</code>
+     * @return Future for the result of the call
+     * @throws java.util.concurrent.RejectedExecutionException If too many calls are in flight
+     */
+    public Future<AkismetResult> submitHamAsync(CommentRequest request, AkismetCallback callback) {
+        return akismetRequestAsync(FUNCTION_SUBMIT_HAM, request, callback);
+    }
+
+    /**
+     * State of a hedged comment-check, shared by the calling thread running the first request and the hedge
+     */
+    private static class Hedge {
+
+        private final Thread caller;
+        private Future<AkismetResult> future;
+        private AkismetResult result;
+        private boolean finished;
+        private boolean interruptedBefore;
+
+        Hedge(Thread caller) {
+            this.caller = caller;
+        }
+
+        /**
+         * Take the answer of the hedge if the first request is still running, interrupting the calling thread
+         *
+         * @param akismetResult Answer of the hedge
+         * @return <code>true</code> if the answer was taken and the first request should be aborted
+         */
+        synchronized boolean win(AkismetResult akismetResult) {
+            if (finished || result != null) {
+                return false;
+            }
+
+            result = akismetResult;
+            interruptedBefore = caller.isInterrupted();
+            caller.interrupt();
+            return true;
+        }
+
+        /**
+         * Mark the first request as finished, clearing the interrupt sent by the hedge, if any. An interrupt the
+         * calling thread already had when the hedge answered is kept.
+         *
+         * @return Answer of the hedge if it answered first, <code>null</code> otherwise
+         */
+        synchronized AkismetResult finish() {
+            finished = true;
+            if (result != null && !interruptedBefore) {
+                Thread.interrupted();
+            }
+
+            return result;
+        }
+
+        synchronized Future<AkismetResult> getFuture() {
+            return future;
+        }
+    }
 }
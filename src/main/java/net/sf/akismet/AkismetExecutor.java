@@ -0,0 +1,289 @@
+/**
+ * Copyright (c) 2005-2007, David A. Czarnecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the "David A. Czarnecki" nor the names of
+ * its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * Products derived from this software may not be called "Akismet Java API",
+ * nor may "Akismet Java API" appear in their name, without prior written permission of
+ * David A. Czarnecki.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sf.akismet;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Runs asynchronous Akismet calls with a bounded number of calls in flight. When the limit is reached, a new
+ * call is rejected with a {@link RejectedExecutionException}. This keeps a slow Akismet from building an
+ * unbounded queue of pending calls. By default the call is rejected at once, so submitting never blocks the
+ * caller; an executor constructed with an acquire timeout instead waits up to that long for another call to
+ * complete.
+ *
+ * @version $Id$
+ */
+public class AkismetExecutor {
+
+    private static final Log logger = LogFactory.getLog(AkismetExecutor.class);
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = 64;
+    public static final long DEFAULT_ACQUIRE_TIMEOUT = 0;
+
+    private final ExecutorService executorService;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private final long acquireTimeout;
+
+    /**
+     * Construct an executor that runs calls on the given executor service
+     *
+     * @param executorService Executor service used to run calls
+     * @param maxInFlight     Maximum number of calls submitted but not yet completed
+     * @param acquireTimeout  Time in milliseconds to wait for a free slot before rejecting a call, <code>0</code>
+     *                        to reject it at once
+     * @throws IllegalArgumentException If the executor service is <code>null</code> or the maximum number of calls is less than 1
+     */
+    public AkismetExecutor(ExecutorService executorService, int maxInFlight, long acquireTimeout) {
+        if (executorService == null) {
+            throw new IllegalArgumentException("Executor service cannot be null");
+        }
+
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("Maximum calls in flight must be at least 1");
+        }
+
+        this.executorService = executorService;
+        this.maxInFlight = maxInFlight;
+        this.acquireTimeout = acquireTimeout;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Construct an executor with a default executor service that rejects calls at once when the limit is
+     * reached. Virtual threads are used when the JVM supports them, otherwise calls run on a cached pool of
+     * daemon threads.
+     *
+     * @param maxInFlight Maximum number of calls submitted but not yet completed
+     * @return Executor
+     */
+    public static AkismetExecutor newDefault(int maxInFlight) {
+        return new AkismetExecutor(newDefaultExecutorService(), maxInFlight, DEFAULT_ACQUIRE_TIMEOUT);
+    }
+
+    /**
+     * Create the default executor service, preferring virtual threads when available
+     *
+     * @return Executor service
+     */
+    static ExecutorService newDefaultExecutorService() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (Exception e) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Virtual threads not available, using platform threads");
+            }
+        }
+
+        return Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "akismet-async-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Submit a call
+     *
+     * @param call     Call to Akismet
+     * @param callback Callback notified when the call completes, may be <code>null</code>
+     * @return Future for the result of the call
+     * @throws RejectedExecutionException If no slot is free, or became free within the timeout, or the executor
+     *                                    service rejected the call
+     */
+    public Future<AkismetResult> submit(final Callable<AkismetResult> call, final AkismetCallback callback) {
+        acquire();
+        return execute(call, callback);
+    }
+
+    /**
+     * Start a call that completes without holding a thread, such as a non-blocking HTTP request. The call is
+     * started on the calling thread and must not block; its slot is released when the returned future completes.
+     *
+     * @param call     Call starting the request to Akismet
+     * @param callback Callback notified when the call completes, may be <code>null</code>
+     * @return Future for the result of the call
+     * @throws RejectedExecutionException If no slot became free within the timeout
+     */
+    Future<AkismetResult> submitAsync(Callable<CompletableFuture<AkismetResult>> call, final AkismetCallback callback) {
+        acquire();
+
+        CompletableFuture<AkismetResult> future;
+        try {
+            future = call.call();
+        } catch (Exception e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+
+        return future.whenComplete(new BiConsumer<AkismetResult, Throwable>() {
+            public void accept(AkismetResult result, Throwable t) {
+                inFlight.release();
+                if (callback != null) {
+                    if (t == null) {
+                        callback.onComplete(result);
+                    } else {
+                        callback.onFailure(t instanceof CompletionException && t.getCause() != null ? t.getCause() : t);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Take a slot, waiting up to the timeout
+     *
+     * @throws RejectedExecutionException If no slot became free within the timeout
+     */
+    private void acquire() {
+        try {
+            if (!inFlight.tryAcquire(acquireTimeout, TimeUnit.MILLISECONDS)) {
+                throw new RejectedExecutionException("Too many Akismet calls in flight (" + maxInFlight + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted waiting for a free slot");
+        }
+    }
+
+    /**
+     * Submit a call if a slot is free, without waiting
+     *
+     * @param call     Call to Akismet
+     * @param callback Callback notified when the call completes, may be <code>null</code>
+     * @return Future for the result of the call, or <code>null</code> if no slot was free or the executor service
+     *         rejected the call
+     */
+    Future<AkismetResult> trySubmit(Callable<AkismetResult> call, AkismetCallback callback) {
+        if (!inFlight.tryAcquire()) {
+            return null;
+        }
+
+        try {
+            return execute(call, callback);
+        } catch (RejectedExecutionException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Run a call holding a slot, releasing the slot when the call completes
+     *
+     * @param call     Call to Akismet
+     * @param callback Callback notified when the call completes, may be <code>null</code>
+     * @return Future for the result of the call
+     * @throws RejectedExecutionException If the executor service rejected the call
+     */
+    private Future<AkismetResult> execute(final Callable<AkismetResult> call, final AkismetCallback callback) {
+        try {
+            return executorService.submit(new Callable<AkismetResult>() {
+                public AkismetResult call() throws Exception {
+                    AkismetResult result;
+                    try {
+                        result = call.call();
+                    } catch (Exception e) {
+                        if (callback != null) {
+                            callback.onFailure(e);
+                        }
+
+                        throw e;
+                    } finally {
+                        inFlight.release();
+                    }
+
+                    if (callback != null) {
+                        callback.onComplete(result);
+                    }
+
+                    return result;
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Return the number of calls submitted but not yet completed
+     *
+     * @return Number of calls in flight
+     */
+    public int getInFlight() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    /**
+     * Return the maximum number of calls in flight
+     *
+     * @return Maximum number of calls in flight
+     */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Return the underlying executor service
+     *
+     * @return Executor service
+     */
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    /**
+     * Stop accepting calls. Calls already submitted are allowed to complete.
+     */
+    public void shutdown() {
+        executorService.shutdown();
+    }
+}
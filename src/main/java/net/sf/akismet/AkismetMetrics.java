@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) 2005-2007, David A. Czarnecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the "David A. Czarnecki" nor the names of
+ * its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * Products derived from this software may not be called "Akismet Java API",
+ * nor may "Akismet Java API" appear in their name, without prior written permission of
+ * David A. Czarnecki.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sf.akismet;
+
+/**
+ * Listener notified of every Akismet call, used to bridge the client to a metrics system. {@link AkismetStatistics}
+ * is the built-in implementation.
+ * <p></p>
+ * Listeners are called on the calling thread, concurrently, and must be thread-safe and fast. The function
+ * passed is one of {@link Akismet#FUNCTION_COMMENT_CHECK}, {@link Akismet#FUNCTION_SUBMIT_SPAM},
+ * {@link Akismet#FUNCTION_SUBMIT_HAM} or {@link Akismet#FUNCTION_VERIFY_KEY}.
+ *
+ * @version $Id$
+ */
+public interface AkismetMetrics {
+
+    /**
+     * Called after each HTTP call to Akismet, successful or not
+     *
+     * @param function   Function called
+     * @param verdict    Verdict, {@link Verdict#ERROR} if the call failed and {@link Verdict#UNKNOWN} for calls that do not return one
+     * @param httpStatus HTTP status code, or <code>0</code> if no response was received
+     * @param latency    Time the call took in nanoseconds
+     * @param exception  Exception that made the call fail, or <code>null</code>
+     */
+    void onCall(String function, Verdict verdict, int httpStatus, long latency, Exception exception);
+
+    /**
+     * Called when a comment-check is answered from the {@link VerdictCache}
+     *
+     * @param verdict Cached verdict
+     */
+    void onCacheHit(Verdict verdict);
+
+    /**
+     * Called when a comment-check is answered by the {@link PreFilter}
+     *
+     * @param verdict Verdict of the filter
+     */
+    void onPreFilter(Verdict verdict);
+
+    /**
+     * Called when a call is not made because the {@link CircuitBreaker} is open
+     *
+     * @param function Function not called
+     */
+    void onCircuitOpen(String function);
+
+    /**
+     * Called when a call is not made because no rate limit token was available in time
+     *
+     * @param function Function not called
+     */
+    void onRateLimited(String function);
+}
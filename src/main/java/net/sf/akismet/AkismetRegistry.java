@@ -0,0 +1,384 @@
+/**
+ * Copyright (c) 2005-2007, David A. Czarnecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the "David A. Czarnecki" nor the names of
+ * its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * Products derived from this software may not be called "Akismet Java API",
+ * nor may "Akismet Java API" appear in their name, without prior written permission of
+ * David A. Czarnecki.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sf.akismet;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out {@link Akismet} instances for many API key and blog pairs, such as one per hosted blog. All instances
+ * share one transport, one executor for asynchronous calls and one {@link KeyVerificationCache}, so each instance
+ * only holds its key, blog and settings.
+ * <p></p>
+ * Instances are created on first use and evicted after the {@link #setIdleTimeout(long) idle timeout}. An evicted
+ * instance keeps working, but the next {@link #get(String, String)} returns a new one, so per-instance settings
+ * should be applied by an {@link Initializer}. Proxy, timeout and pool settings belong to the registry; the
+ * corresponding methods of its instances throw {@link IllegalStateException}.
+ * <p></p>
+ * <pre>
+ * AkismetRegistry registry = new AkismetRegistry(50, 200);
+ * registry.setInitializer(new AkismetRegistry.Initializer() {
+ *     public void initialize(Akismet akismet) {
+ *         akismet.setVerdictCache(sharedVerdictCache);
+ *     }
+ * });
+ * boolean spam = registry.get(blog.getApiKey(), blog.getURL()).commentCheck(...);
+ * </pre>
+ *
+ * @version $Id$
+ */
+public class AkismetRegistry {
+
+    public static final long DEFAULT_IDLE_TIMEOUT = 30 * 60 * 1000L;
+
+    /**
+     * Configures instances as the registry creates them
+     */
+    public interface Initializer {
+
+        /**
+         * Configure a new instance. May be called concurrently, and occasionally for an instance that is
+         * discarded because another thread created the same one first.
+         *
+         * @param akismet New instance
+         */
+        void initialize(Akismet akismet);
+    }
+
+    private final AkismetTransport transport;
+    private final boolean ownsTransport;
+    private final KeyVerificationCache keyVerificationCache;
+    private final ConcurrentMap<String, Tenant> tenants = new ConcurrentHashMap<String, Tenant>();
+    private final AtomicLong lastEviction = new AtomicLong(System.currentTimeMillis());
+    private AkismetExecutor asyncExecutor;
+    private boolean ownsAsyncExecutor;
+    private volatile Initializer initializer;
+    private volatile long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+
+    /**
+     * Construct a registry with a new key verification cache
+     *
+     * @param maxConnectionsPerHost Maximum number of pooled connections to a single Akismet host
+     * @param maxTotalConnections   Maximum number of pooled connections across all Akismet hosts
+     * @throws IllegalArgumentException If either connection limit is less than 1
+     */
+    public AkismetRegistry(int maxConnectionsPerHost, int maxTotalConnections) {
+        this(maxConnectionsPerHost, maxTotalConnections, new KeyVerificationCache());
+    }
+
+    /**
+     * Construct a registry
+     *
+     * @param maxConnectionsPerHost Maximum number of pooled connections to a single Akismet host
+     * @param maxTotalConnections   Maximum number of pooled connections across all Akismet hosts
+     * @param keyVerificationCache  Cache for the verify-key results of all instances
+     * @throws IllegalArgumentException If either connection limit is less than 1 or the cache is <code>null</code>
+     */
+    public AkismetRegistry(int maxConnectionsPerHost, int maxTotalConnections, KeyVerificationCache keyVerificationCache) {
+        if (keyVerificationCache == null) {
+            throw new IllegalArgumentException("Key verification cache cannot be null");
+        }
+
+        this.keyVerificationCache = keyVerificationCache;
+        transport = new CommonsHttpTransport(maxConnectionsPerHost, maxTotalConnections);
+        ownsTransport = true;
+    }
+
+    /**
+     * Construct a registry whose instances call Akismet over the given transport, for example a
+     * {@link JdkHttpTransport}. A transport passed here is not shut down by {@link #shutdown()}.
+     *
+     * @param transport            Transport shared by all instances
+     * @param keyVerificationCache Cache for the verify-key results of all instances
+     * @throws IllegalArgumentException If the transport or the cache is <code>null</code>
+     */
+    public AkismetRegistry(AkismetTransport transport, KeyVerificationCache keyVerificationCache) {
+        if (transport == null) {
+            throw new IllegalArgumentException("Transport cannot be null");
+        }
+
+        if (keyVerificationCache == null) {
+            throw new IllegalArgumentException("Key verification cache cannot be null");
+        }
+
+        this.keyVerificationCache = keyVerificationCache;
+        this.transport = transport;
+        ownsTransport = false;
+    }
+
+    /**
+     * Return the instance for an API key and blog, creating it if necessary
+     *
+     * @param apiKey Akismet API key
+     * @param blog   Blog associated with the API key
+     * @return Instance sharing the resources of this registry
+     * @throws IllegalArgumentException If either the API key or blog is <code>null</code>
+     */
+    public Akismet get(String apiKey, String blog) {
+        if (apiKey == null) {
+            throw new IllegalArgumentException("API key cannot be null");
+        }
+
+        if (blog == null) {
+            throw new IllegalArgumentException("Blog cannot be null");
+        }
+
+        long now = System.currentTimeMillis();
+        String key = apiKey + "\n" + blog;
+
+        Tenant tenant = tenants.get(key);
+        if (tenant == null) {
+            Akismet akismet = new Akismet(apiKey, blog, this);
+            Initializer configured = initializer;
+            if (configured != null) {
+                configured.initialize(akismet);
+            }
+
+            Tenant created = new Tenant(apiKey, blog, akismet, now);
+            tenant = tenants.putIfAbsent(key, created);
+            if (tenant == null) {
+                tenant = created;
+            }
+        }
+        tenant.lastUsed = now;
+
+        // Evict on access rather than from a background thread
+        long last = lastEviction.get();
+        if (now - last >= Math.max(idleTimeout / 2, 1000) && lastEviction.compareAndSet(last, now)) {
+            evictIdle(now);
+        }
+
+        return tenant.akismet;
+    }
+
+    /**
+     * Remove the instance for an API key and blog, along with its cached key verification
+     *
+     * @param apiKey Akismet API key
+     * @param blog   Blog associated with the API key
+     */
+    public void remove(String apiKey, String blog) {
+        tenants.remove(apiKey + "\n" + blog);
+        keyVerificationCache.invalidate(apiKey, blog);
+    }
+
+    /**
+     * Remove the instances that have not been returned by {@link #get(String, String)} within the idle timeout.
+     * This also happens during calls to {@link #get(String, String)}.
+     */
+    public void evictIdle() {
+        evictIdle(System.currentTimeMillis());
+    }
+
+    private void evictIdle(long now) {
+        long timeout = idleTimeout;
+        Iterator<Map.Entry<String, Tenant>> iterator = tenants.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Tenant> entry = iterator.next();
+            Tenant tenant = entry.getValue();
+            if (now - tenant.lastUsed >= timeout && tenants.remove(entry.getKey(), tenant)) {
+                keyVerificationCache.invalidate(tenant.apiKey, tenant.blog);
+            }
+        }
+    }
+
+    /**
+     * Return the number of instances held
+     *
+     * @return Number of instances
+     */
+    public int size() {
+        return tenants.size();
+    }
+
+    /**
+     * Sets how long an instance is kept after it was last returned by {@link #get(String, String)}. Defaults
+     * to {@link #DEFAULT_IDLE_TIMEOUT}.
+     *
+     * @param idleTimeout Time in milliseconds
+     */
+    public void setIdleTimeout(long idleTimeout) {
+        if (idleTimeout < 1) {
+            throw new IllegalArgumentException("Idle timeout must be at least 1");
+        }
+
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Sets the initializer applied to new instances. Pass <code>null</code> for none, which is the default.
+     *
+     * @param initializer Initializer, may be <code>null</code>
+     */
+    public void setInitializer(Initializer initializer) {
+        this.initializer = initializer;
+    }
+
+    /**
+     * Sets proxy configuration information for all instances
+     *
+     * @param proxyHost Proxy host
+     * @param proxyPort Proxy port
+     */
+    public void setProxyConfiguration(String proxyHost, int proxyPort) {
+        transport.setProxy(proxyHost, proxyPort);
+    }
+
+    /**
+     * Sets proxy authentication information for all instances
+     *
+     * @param proxyUsername Username to access proxy
+     * @param proxyPassword Password to access proxy
+     */
+    public void setProxyAuthenticationConfiguration(String proxyUsername, String proxyPassword) {
+        transport.setProxyCredentials(proxyUsername, proxyPassword);
+    }
+
+    /**
+     * Sets the connect and read timeouts for all instances
+     *
+     * @param connectionTimeout Time in milliseconds to wait for a connection to be established
+     * @param socketTimeout     Time in milliseconds to wait for data on an established connection
+     * @see Akismet#setTimeouts(int, int)
+     */
+    public void setTimeouts(int connectionTimeout, int socketTimeout) {
+        transport.setTimeouts(connectionTimeout, socketTimeout);
+    }
+
+    /**
+     * Close pooled connections that have been idle for longer than the given timeout, for all instances. Not to
+     * be confused with {@link #setIdleTimeout(long)}, which evicts instances.
+     *
+     * @param idleTimeout Time in milliseconds after which an idle connection is closed
+     * @throws IllegalStateException    If the transport is not a pooled {@link CommonsHttpTransport}
+     * @throws IllegalArgumentException If the timeout is less than 1
+     * @see Akismet#setIdleConnectionTimeout(long)
+     */
+    public void setIdleConnectionTimeout(long idleTimeout) {
+        if (!(transport instanceof CommonsHttpTransport)) {
+            throw new IllegalStateException("Idle connection timeout requires a pooled instance");
+        }
+
+        ((CommonsHttpTransport) transport).setIdleConnectionTimeout(idleTimeout);
+    }
+
+    /**
+     * Sets the executor used for the asynchronous calls of all instances. An executor set here is not shut
+     * down by {@link #shutdown()}.
+     *
+     * @param asyncExecutor Executor for asynchronous calls
+     */
+    public synchronized void setAsyncExecutor(AkismetExecutor asyncExecutor) {
+        if (ownsAsyncExecutor && this.asyncExecutor != null) {
+            this.asyncExecutor.shutdown();
+        }
+
+        this.asyncExecutor = asyncExecutor;
+        this.ownsAsyncExecutor = false;
+    }
+
+    /**
+     * Return the executor used for the asynchronous calls of all instances, creating the default executor if
+     * necessary
+     *
+     * @return Executor for asynchronous calls
+     */
+    public synchronized AkismetExecutor getAsyncExecutor() {
+        if (asyncExecutor == null) {
+            asyncExecutor = AkismetExecutor.newDefault(AkismetExecutor.DEFAULT_MAX_IN_FLIGHT);
+            ownsAsyncExecutor = true;
+        }
+
+        return asyncExecutor;
+    }
+
+    /**
+     * Return the cache for the verify-key results of all instances
+     *
+     * @return Key verification cache
+     */
+    public KeyVerificationCache getKeyVerificationCache() {
+        return keyVerificationCache;
+    }
+
+    /**
+     * Return the number of connections held by the shared pool, in use or idle
+     *
+     * @return Number of pooled connections, <code>0</code> if the transport is not a {@link CommonsHttpTransport}
+     */
+    public int getConnectionsInPool() {
+        return transport instanceof CommonsHttpTransport ? ((CommonsHttpTransport) transport).getConnectionsInPool() : 0;
+    }
+
+    /**
+     * Return the transport shared by all instances
+     *
+     * @return Transport
+     */
+    AkismetTransport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Release the resources shared by the instances, which should not be used afterwards
+     */
+    public synchronized void shutdown() {
+        tenants.clear();
+
+        if (ownsAsyncExecutor && asyncExecutor != null) {
+            asyncExecutor.shutdown();
+            asyncExecutor = null;
+        }
+
+        if (ownsTransport) {
+            transport.shutdown();
+        }
+    }
+
+    private static class Tenant {
+        private final String apiKey;
+        private final String blog;
+        private final Akismet akismet;
+        private volatile long lastUsed;
+
+        Tenant(String apiKey, String blog, Akismet akismet, long lastUsed) {
+            this.apiKey = apiKey;
+            this.blog = blog;
+            this.akismet = akismet;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
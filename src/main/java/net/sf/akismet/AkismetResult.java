@@ -0,0 +1,280 @@
+/**
+ * Copyright (c) 2005-2007, David A. Czarnecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the "David A. Czarnecki" nor the names of
+ * its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * Products derived from this software may not be called "Akismet Java API",
+ * nor may "Akismet Java API" appear in their name, without prior written permission of
+ * David A. Czarnecki.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sf.akismet;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Result of a single call to Akismet. Unlike {@link Akismet#getHttpResult()}, a result belongs to the call
+ * that produced it, so it is safe to use when one {@link Akismet} instance is shared between threads.
+ * <p></p>
+ * Besides the {@link Verdict}, a result carries the HTTP status, the response body, the Akismet response headers
+ * (<code>X-akismet-pro-tip</code>, <code>X-akismet-debug-help</code> and the others in {@link #HEADERS}), the time
+ * the call took and, if the call failed, the exception.
+ * <p></p>
+ * A result is {@link #isCancelled() cancelled} when the calling thread was interrupted while the call was in
+ * flight, for instance because a hedged request answered first; such a call tells nothing about Akismet and is
+ * not counted by the circuit breaker or the metrics.
+ *
+ * @version $Id$
+ */
+public class AkismetResult {
+
+    public static final String HEADER_PRO_TIP = "X-akismet-pro-tip";
+    public static final String HEADER_DEBUG_HELP = "X-akismet-debug-help";
+    public static final String HEADER_GUID = "X-akismet-guid";
+    public static final String HEADER_ALERT_CODE = "X-akismet-alert-code";
+    public static final String HEADER_ALERT_MSG = "X-akismet-alert-msg";
+
+    /**
+     * Response headers kept in a result
+     */
+    public static final String[] HEADERS = {HEADER_PRO_TIP, HEADER_DEBUG_HELP, HEADER_GUID, HEADER_ALERT_CODE, HEADER_ALERT_MSG};
+
+    private final int httpStatus;
+    private final String responseBody;
+    private final Verdict verdict;
+    private final Map<String, String> headers;
+    private final long latency;
+    private final Exception exception;
+    private final boolean fallback;
+    private final boolean cancelled;
+
+    /**
+     * Construct a result
+     *
+     * @param httpStatus   HTTP status code returned by Akismet, or <code>0</code> if no response was received
+     * @param responseBody Response body returned by Akismet, may be <code>null</code>
+     * @param spam         <code>true</code> if the comment is identified by Akismet as spam, <code>false</code> otherwise
+     */
+    public AkismetResult(int httpStatus, String responseBody, boolean spam) {
+        this(httpStatus, responseBody, spam ? Verdict.SPAM : Verdict.HAM);
+    }
+
+    /**
+     * Construct a result
+     *
+     * @param httpStatus   HTTP status code returned by Akismet, or <code>0</code> if no response was received
+     * @param responseBody Response body returned by Akismet, may be <code>null</code>
+     * @param verdict      Verdict on the comment
+     */
+    public AkismetResult(int httpStatus, String responseBody, Verdict verdict) {
+        this(httpStatus, responseBody, verdict, null, 0, null);
+    }
+
+    /**
+     * Construct a result
+     *
+     * @param httpStatus   HTTP status code returned by Akismet, or <code>0</code> if no response was received
+     * @param responseBody Response body returned by Akismet, may be <code>null</code>
+     * @param verdict      Verdict on the comment
+     * @param headers      Akismet response headers by name, may be <code>null</code>
+     * @param latency      Time the call took in nanoseconds
+     * @param exception    Exception that made the call fail, may be <code>null</code>
+     */
+    public AkismetResult(int httpStatus, String responseBody, Verdict verdict, Map<String, String> headers, long latency,
+                         Exception exception) {
+        this(httpStatus, responseBody, verdict, headers, latency, exception, false, false);
+    }
+
+    private AkismetResult(int httpStatus, String responseBody, Verdict verdict, Map<String, String> headers, long latency,
+                          Exception exception, boolean fallback, boolean cancelled) {
+        if (verdict == null) {
+            throw new IllegalArgumentException("Verdict cannot be null");
+        }
+
+        this.httpStatus = httpStatus;
+        this.responseBody = responseBody;
+        this.verdict = verdict;
+        this.headers = (headers == null || headers.isEmpty()) ? Collections.<String, String>emptyMap() : Collections.unmodifiableMap(headers);
+        this.latency = latency;
+        this.exception = exception;
+        this.fallback = fallback;
+        this.cancelled = cancelled;
+    }
+
+    /**
+     * Construct the result of a call that was not made because the circuit breaker is open or the rate limit
+     * was reached
+     *
+     * @param verdict Fallback verdict
+     * @return Result
+     */
+    static AkismetResult fallback(Verdict verdict) {
+        return new AkismetResult(0, null, verdict, null, 0, null, true, false);
+    }
+
+    /**
+     * Construct the result of a call that was cancelled before Akismet answered
+     *
+     * @param latency   Time the call took in nanoseconds
+     * @param exception Exception that ended the call
+     * @return Result
+     */
+    static AkismetResult cancelled(long latency, Exception exception) {
+        return new AkismetResult(0, null, Verdict.ERROR, null, latency, exception, false, true);
+    }
+
+    /**
+     * Return the HTTP status code of the call
+     *
+     * @return HTTP status code, or <code>0</code> if no response was received
+     */
+    public int getHttpStatus() {
+        return httpStatus;
+    }
+
+    /**
+     * Return the response body of the call
+     *
+     * @return Response body, may be <code>null</code>
+     */
+    public String getResponseBody() {
+        return responseBody;
+    }
+
+    /**
+     * Check to see if the comment was identified as spam
+     *
+     * @return <code>true</code> if the comment is identified by Akismet as spam, <code>false</code> otherwise
+     */
+    public boolean isSpam() {
+        return verdict.isSpam();
+    }
+
+    /**
+     * Check to see if Akismet advised discarding the comment without storing it
+     *
+     * @return <code>true</code> if the verdict is {@link Verdict#DISCARD}, <code>false</code> otherwise
+     */
+    public boolean isDiscard() {
+        return verdict == Verdict.DISCARD;
+    }
+
+    /**
+     * Check to see if the call failed to produce an answer from Akismet
+     *
+     * @return <code>true</code> if the verdict is {@link Verdict#ERROR}, <code>false</code> otherwise
+     */
+    public boolean isError() {
+        return verdict == Verdict.ERROR;
+    }
+
+    /**
+     * Check to see if the verdict is a fallback rather than an answer, because the circuit breaker was open or
+     * the rate limit was reached
+     *
+     * @return <code>true</code> if Akismet was not called, <code>false</code> otherwise
+     */
+    public boolean isFallback() {
+        return fallback;
+    }
+
+    /**
+     * Check to see if the call was cancelled by interrupting the calling thread before Akismet answered
+     *
+     * @return <code>true</code> if the call was cancelled, <code>false</code> otherwise
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Return the verdict on the comment
+     *
+     * @return Verdict
+     */
+    public Verdict getVerdict() {
+        return verdict;
+    }
+
+    /**
+     * Return an Akismet response header
+     *
+     * @param name Header name, one of {@link #HEADERS}
+     * @return Header value, or <code>null</code> if the header was not sent
+     */
+    public String getHeader(String name) {
+        return headers.get(name);
+    }
+
+    /**
+     * Return the Akismet response headers
+     *
+     * @return Unmodifiable map of header values by name
+     */
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * Return the value of the <code>X-akismet-pro-tip</code> header
+     *
+     * @return Header value, or <code>null</code> if the header was not sent
+     */
+    public String getProTip() {
+        return headers.get(HEADER_PRO_TIP);
+    }
+
+    /**
+     * Return the value of the <code>X-akismet-debug-help</code> header, sent with <code>invalid</code> responses
+     *
+     * @return Header value, or <code>null</code> if the header was not sent
+     */
+    public String getDebugHelp() {
+        return headers.get(HEADER_DEBUG_HELP);
+    }
+
+    /**
+     * Return the time the call took
+     *
+     * @return Latency in nanoseconds, <code>0</code> if Akismet was not called
+     */
+    public long getLatency() {
+        return latency;
+    }
+
+    /**
+     * Return the exception that made the call fail
+     *
+     * @return Exception, or <code>null</code> if the call did not fail with an exception
+     */
+    public Exception getException() {
+        return exception;
+    }
+
+    public String toString() {
+        return "AkismetResult[httpStatus=" + httpStatus + ", verdict=" + verdict + "]";
+    }
+}
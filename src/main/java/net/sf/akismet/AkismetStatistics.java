@@ -0,0 +1,318 @@
+/**
+ * Copyright (c) 2005-2007, David A. Czarnecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the "David A. Czarnecki" nor the names of
+ * its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * Products derived from this software may not be called "Akismet Java API",
+ * nor may "Akismet Java API" appear in their name, without prior written permission of
+ * David A. Czarnecki.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sf.akismet;
+
+import org.apache.commons.httpclient.ConnectTimeoutException;
+import org.apache.commons.httpclient.ConnectionPoolTimeoutException;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Built-in {@link AkismetMetrics} keeping counters and latency histograms in memory. Counts are kept per
+ * function, per verdict and per {@link ErrorType}; recording uses atomic counters only and does not allocate.
+ * <p></p>
+ * <pre>
+ * AkismetStatistics statistics = new AkismetStatistics();
+ * akismet.setMetrics(statistics);
+ * ...
+ * long p99 = statistics.getLatency(Akismet.FUNCTION_COMMENT_CHECK).getPercentile(99);
+ * </pre>
+ *
+ * @version $Id$
+ */
+public class AkismetStatistics implements AkismetMetrics {
+
+    /**
+     * Kinds of failed calls
+     */
+    public enum ErrorType {
+        /**
+         * Akismet could not be connected to
+         */
+        CONNECT,
+
+        /**
+         * No pooled connection became available in time
+         */
+        POOL_TIMEOUT,
+
+        /**
+         * Akismet did not answer in time
+         */
+        TIMEOUT,
+
+        /**
+         * Any other I/O failure
+         */
+        IO,
+
+        /**
+         * Akismet answered with a 5xx status
+         */
+        SERVER,
+
+        /**
+         * Akismet answered with another non-200 status
+         */
+        CLIENT,
+
+        /**
+         * Akismet answered 200 without a verdict, for example <code>invalid</code>
+         */
+        INVALID,
+
+        /**
+         * The call was not made because the circuit breaker is open
+         */
+        CIRCUIT_OPEN,
+
+        /**
+         * The call was not made because no rate limit token was available in time
+         */
+        RATE_LIMITED
+    }
+
+    private static final String[] FUNCTIONS = {Akismet.FUNCTION_COMMENT_CHECK, Akismet.FUNCTION_SUBMIT_SPAM,
+            Akismet.FUNCTION_SUBMIT_HAM, Akismet.FUNCTION_VERIFY_KEY};
+    private static final int VERDICTS = Verdict.values().length;
+    private static final int ERROR_TYPES = ErrorType.values().length;
+
+    private final AtomicLongArray calls = new AtomicLongArray(FUNCTIONS.length);
+    private final AtomicLongArray verdicts = new AtomicLongArray(FUNCTIONS.length * VERDICTS);
+    private final AtomicLongArray errors = new AtomicLongArray(FUNCTIONS.length * ERROR_TYPES);
+    private final AtomicLongArray cacheHits = new AtomicLongArray(VERDICTS);
+    private final AtomicLongArray preFilterVerdicts = new AtomicLongArray(VERDICTS);
+    private final LatencyHistogram[] latencies = new LatencyHistogram[FUNCTIONS.length];
+
+    public AkismetStatistics() {
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    public void onCall(String function, Verdict verdict, int httpStatus, long latency, Exception exception) {
+        int index = functionIndex(function);
+        if (index < 0) {
+            return;
+        }
+
+        calls.incrementAndGet(index);
+        verdicts.incrementAndGet(index * VERDICTS + verdict.ordinal());
+        latencies[index].record(latency);
+
+        if (verdict == Verdict.ERROR) {
+            errors.incrementAndGet(index * ERROR_TYPES + classify(httpStatus, exception).ordinal());
+        }
+    }
+
+    public void onCacheHit(Verdict verdict) {
+        cacheHits.incrementAndGet(verdict.ordinal());
+    }
+
+    public void onPreFilter(Verdict verdict) {
+        preFilterVerdicts.incrementAndGet(verdict.ordinal());
+    }
+
+    public void onCircuitOpen(String function) {
+        int index = functionIndex(function);
+        if (index >= 0) {
+            errors.incrementAndGet(index * ERROR_TYPES + ErrorType.CIRCUIT_OPEN.ordinal());
+        }
+    }
+
+    public void onRateLimited(String function) {
+        int index = functionIndex(function);
+        if (index >= 0) {
+            errors.incrementAndGet(index * ERROR_TYPES + ErrorType.RATE_LIMITED.ordinal());
+        }
+    }
+
+    /**
+     * Return the number of HTTP calls made for a function
+     *
+     * @param function Function
+     * @return Number of calls
+     */
+    public long getCalls(String function) {
+        return calls.get(checkedIndex(function));
+    }
+
+    /**
+     * Return the number of HTTP calls for a function that ended with a verdict
+     *
+     * @param function Function
+     * @param verdict  Verdict
+     * @return Number of calls
+     */
+    public long getVerdicts(String function, Verdict verdict) {
+        return verdicts.get(checkedIndex(function) * VERDICTS + verdict.ordinal());
+    }
+
+    /**
+     * Return the number of failed calls for a function
+     *
+     * @param function Function
+     * @param type     Kind of failure
+     * @return Number of failures
+     */
+    public long getErrors(String function, ErrorType type) {
+        return errors.get(checkedIndex(function) * ERROR_TYPES + type.ordinal());
+    }
+
+    /**
+     * Return the number of comment-checks answered from the verdict cache
+     *
+     * @param verdict Verdict
+     * @return Number of cache hits
+     */
+    public long getCacheHits(Verdict verdict) {
+        return cacheHits.get(verdict.ordinal());
+    }
+
+    /**
+     * Return the number of comment-checks answered by the pre-filter
+     *
+     * @param verdict Verdict
+     * @return Number of comments
+     */
+    public long getPreFilterVerdicts(Verdict verdict) {
+        return preFilterVerdicts.get(verdict.ordinal());
+    }
+
+    /**
+     * Return the latency histogram of the HTTP calls for a function
+     *
+     * @param function Function
+     * @return Latency histogram in nanoseconds
+     */
+    public LatencyHistogram getLatency(String function) {
+        return latencies[checkedIndex(function)];
+    }
+
+    /**
+     * Clear all counters and histograms
+     */
+    public void reset() {
+        for (int i = 0; i < calls.length(); i++) {
+            calls.set(i, 0);
+        }
+        for (int i = 0; i < verdicts.length(); i++) {
+            verdicts.set(i, 0);
+        }
+        for (int i = 0; i < errors.length(); i++) {
+            errors.set(i, 0);
+        }
+        for (int i = 0; i < VERDICTS; i++) {
+            cacheHits.set(i, 0);
+            preFilterVerdicts.set(i, 0);
+        }
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i].reset();
+        }
+    }
+
+    /**
+     * Classify a failed call
+     *
+     * @param httpStatus HTTP status code, or <code>0</code> if no response was received
+     * @param exception  Exception that made the call fail, may be <code>null</code>
+     * @return Kind of failure
+     */
+    public static ErrorType classify(int httpStatus, Exception exception) {
+        if (exception != null) {
+            if (exception instanceof ConnectionPoolTimeoutException) {
+                return ErrorType.POOL_TIMEOUT;
+            }
+            if (exception instanceof ConnectException || exception instanceof ConnectTimeoutException
+                    || exception instanceof HttpConnectTimeoutException || exception instanceof UnknownHostException) {
+                return ErrorType.CONNECT;
+            }
+            if (exception instanceof SocketTimeoutException || exception instanceof HttpTimeoutException) {
+                return ErrorType.TIMEOUT;
+            }
+            return ErrorType.IO;
+        }
+
+        if (httpStatus >= 500) {
+            return ErrorType.SERVER;
+        }
+        if (httpStatus != 200 && httpStatus != 0) {
+            return ErrorType.CLIENT;
+        }
+
+        return ErrorType.INVALID;
+    }
+
+    public String toString() {
+        StringBuilder builder = new StringBuilder("AkismetStatistics[");
+        for (int i = 0; i < FUNCTIONS.length; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(FUNCTIONS[i]).append("=").append(calls.get(i))
+                    .append(" (p50=").append(latencies[i].getPercentile(50) / 1000000)
+                    .append("ms, p99=").append(latencies[i].getPercentile(99) / 1000000).append("ms)");
+        }
+
+        return builder.append("]").toString();
+    }
+
+    private static int functionIndex(String function) {
+        for (int i = 0; i < FUNCTIONS.length; i++) {
+            if (FUNCTIONS[i] == function) {
+                return i;
+            }
+        }
+        for (int i = 0; i < FUNCTIONS.length; i++) {
+            if (FUNCTIONS[i].equals(function)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static int checkedIndex(String function) {
+        int index = functionIndex(function);
+        if (index < 0) {
+            throw new IllegalArgumentException("Unknown function: " + function);
+        }
+
+        return index;
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2005-2007, David A. Czarnecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the "David A. Czarnecki" nor the names of
+ * its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * Products derived from this software may not be called "Akismet Java API",
+ * nor may "Akismet Java API" appear in their name, without prior written permission of
+ * David A. Czarnecki.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sf.akismet;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Sends the HTTP requests of an {@link Akismet} instance. {@link CommonsHttpTransport} uses Commons HttpClient
+ * 3 and is the default; {@link JdkHttpTransport} uses the <code>java.net.http</code> client of the JDK, which
+ * supports HTTP/2. A transport shared between threads must be safe for use by several threads at once.
+ *
+ * @version $Id$
+ */
+public interface AkismetTransport {
+
+    /**
+     * Post an encoded form. The body is sent as the prefix followed by the body, without copying them into
+     * a single array.
+     *
+     * @param url    URL to post to
+     * @param prefix Encoded parameters sent first
+     * @param body   Encoded parameters sent after the prefix
+     * @return Response, whatever its status
+     * @throws IOException If no response was received
+     */
+    Response post(String url, byte[] prefix, byte[] body) throws IOException;
+
+    /**
+     * Sets the proxy used for all requests
+     *
+     * @param proxyHost Proxy host
+     * @param proxyPort Proxy port
+     */
+    void setProxy(String proxyHost, int proxyPort);
+
+    /**
+     * Sets the credentials used to authenticate with the proxy
+     *
+     * @param proxyUsername Username to access proxy
+     * @param proxyPassword Password to access proxy
+     */
+    void setProxyCredentials(String proxyUsername, String proxyPassword);
+
+    /**
+     * Sets the connect and read timeouts. A timeout of <code>0</code> means wait indefinitely.
+     *
+     * @param connectionTimeout Time in milliseconds to wait for a connection to be established
+     * @param socketTimeout     Time in milliseconds to wait for the response
+     */
+    void setTimeouts(int connectionTimeout, int socketTimeout);
+
+    /**
+     * Release the connections and threads held by the transport, which should not be used afterwards
+     */
+    void shutdown();
+
+    /**
+     * Response to a request
+     */
+    final class Response {
+
+        private final int status;
+        private final String body;
+        private final Map<String, String> headers;
+
+        /**
+         * Construct a response
+         *
+         * @param status  HTTP status code
+         * @param body    Response body, may be <code>null</code>
+         * @param headers Values of the {@link AkismetResult#HEADERS Akismet headers} that were sent, keyed by
+         *                the names in {@link AkismetResult#HEADERS}, or <code>null</code> if none were sent
+         */
+        public Response(int status, String body, Map<String, String> headers) {
+            this.status = status;
+            this.body = body;
+            this.headers = headers;
+        }
+
+        /**
+         * Return the HTTP status code
+         *
+         * @return HTTP status code
+         */
+        public int getStatus() {
+            return status;
+        }
+
+        /**
+         * Return the response body
+         *
+         * @return Response body, may be <code>null</code>
+         */
+        public String getBody() {
+            return body;
+        }
+
+        /**
+         * Return the Akismet headers that were sent
+         *
+         * @return Header values by name, or <code>null</code> if none were sent
+         */
+        public Map<String, String> getHeaders() {
+            return headers;
+        }
+    }
+}
@@ -0,0 +1,480 @@
+/**
+ * Copyright (c) 2005-2007, David A. Czarnecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the "David A. Czarnecki" nor the names of
+ * its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * Products derived from this software may not be called "Akismet Java API",
+ * nor may "Akismet Java API" appear in their name, without prior written permission of
+ * David A. Czarnecki.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sf.akismet;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs comment-check over a large backlog of stored comments, for example after a spam wave. Comments are read
+ * lazily from an {@link Iterator}, such as a {@link CommentFileReader}, and checked by a fixed number of
+ * concurrent workers, optionally under a global rate limit. At most {@link #getWindow()} comments are held in
+ * memory at any time. Calls wait for tokens from the {@link Akismet#getRateLimit() rate limit} of the instance with
+ * {@link TokenBucket.Priority#BACKGROUND} priority, so interactive calls go first.
+ * <p></p>
+ * Progress is saved to an optional checkpoint file as the number of leading comments that are complete. A run
+ * that is interrupted and started again with the same input and checkpoint skips those comments; comments after
+ * the checkpoint that had already completed are checked again.
+ * <p></p>
+ * A comment is complete once Akismet answers it, whether with a verdict or with a permanent error such as an
+ * <code>invalid</code> response or a 4xx status, which is passed to the listener and not checked again. Transient
+ * failures are retried: while the circuit breaker of the instance is open or the rate limit is reached the workers
+ * pause and try again, so an outage pauses the scan rather than skipping comments, and a comment that gets no
+ * answer or a 5xx status is tried up to {@link #ERROR_ATTEMPTS} times. A comment that still fails is passed to
+ * the listener with its error, and the checkpoint does not move past it, so a resumed run checks it again.
+ * <p></p>
+ * <pre>
+ * Akismet akismet = new Akismet("Your API key", "http://your.blog.com/", 16, 16);
+ * BulkScanner scanner = new BulkScanner(akismet, 16);
+ * scanner.setRateLimit(new TokenBucket(50, 50));
+ * scanner.setCheckpoint(new File("rescan.checkpoint"));
+ * CommentFileReader comments = CommentFileReader.jsonLines(new File("comments.jsonl"));
+ * try {
+ *     scanner.scan(comments, listener);
+ * } finally {
+ *     comments.close();
+ * }
+ * </pre>
+ * The {@link Akismet} instance should pool at least as many connections per host as there are workers.
+ *
+ * @version $Id$
+ */
+public class BulkScanner {
+
+    private static final Log logger = LogFactory.getLog(BulkScanner.class);
+
+    public static final long DEFAULT_CHECKPOINT_INTERVAL = 1000;
+    public static final int ERROR_ATTEMPTS = 3;
+
+    private static final long PAUSE = 1000;
+    private static final long ERROR_BASE_DELAY = 1000;
+    private static final long ERROR_MAX_DELAY = 10000;
+
+    private final Akismet akismet;
+    private final int concurrency;
+    private volatile TokenBucket rateLimit;
+    private volatile boolean ordered;
+    private volatile File checkpoint;
+    private volatile long checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+    private volatile boolean stopped;
+    private final RetryPolicy errorRetry = new RetryPolicy(ERROR_ATTEMPTS, ERROR_BASE_DELAY, ERROR_MAX_DELAY,
+            new RetryBudget(RetryPolicy.DEFAULT_BUDGET_RATIO, RetryPolicy.DEFAULT_BUDGET_RESERVE));
+
+    /**
+     * Construct a scanner
+     *
+     * @param akismet     Akismet instance used for the calls
+     * @param concurrency Number of concurrent calls
+     */
+    public BulkScanner(Akismet akismet, int concurrency) {
+        if (akismet == null) {
+            throw new IllegalArgumentException("Akismet cannot be null");
+        }
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be at least 1");
+        }
+
+        this.akismet = akismet;
+        akismet.usePool();
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Sets the rate limit shared by all workers. The bucket may also be shared with other scanners. Pass
+     * <code>null</code> for no limit, which is the default.
+     *
+     * @param rateLimit Token bucket, may be <code>null</code>
+     */
+    public void setRateLimit(TokenBucket rateLimit) {
+        this.rateLimit = rateLimit;
+    }
+
+    /**
+     * Sets whether results are passed to the listener in input order. Ordered results wait for slower
+     * earlier comments. Defaults to <code>false</code>.
+     *
+     * @param ordered <code>true</code> to pass results in input order
+     */
+    public void setOrdered(boolean ordered) {
+        this.ordered = ordered;
+    }
+
+    /**
+     * Sets the file progress is saved to and resumed from. Pass <code>null</code> to disable checkpoints, which
+     * is the default.
+     *
+     * @param checkpoint Checkpoint file, may be <code>null</code>
+     */
+    public void setCheckpoint(File checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Sets how often progress is saved
+     *
+     * @param checkpointInterval Interval in milliseconds
+     */
+    public void setCheckpointInterval(long checkpointInterval) {
+        if (checkpointInterval < 0) {
+            throw new IllegalArgumentException("Checkpoint interval cannot be negative");
+        }
+
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * Return the largest number of comments read but not yet complete
+     *
+     * @return Twice the concurrency
+     */
+    public int getWindow() {
+        return concurrency * 2;
+    }
+
+    /**
+     * Stop a running scan. Comments already being checked complete and the checkpoint is saved. When called
+     * before {@link #scan(Iterator, BulkScanListener)}, the next scan returns without checking any comment.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Check every comment of the input, resuming from the checkpoint if there is one. Returns when all comments
+     * are complete, the scan is stopped, or the thread is interrupted.
+     *
+     * @param comments Comments to check
+     * @param listener Listener receiving the results
+     * @return Number of leading complete comments, which is saved to the checkpoint
+     * @throws IOException          If the checkpoint cannot be read or written
+     * @throws InterruptedException If interrupted while waiting; the comments in progress complete first
+     */
+    public long scan(Iterator<CommentRequest> comments, BulkScanListener listener) throws IOException, InterruptedException {
+        if (comments == null) {
+            throw new IllegalArgumentException("Comments cannot be null");
+        }
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener cannot be null");
+        }
+
+        File checkpointFile = checkpoint;
+        long start = checkpointFile == null ? 0 : readCheckpoint(checkpointFile);
+
+        long index = 0;
+        while (index < start && comments.hasNext()) {
+            comments.next();
+            index++;
+        }
+
+        Run run = new Run(index, listener, checkpointFile);
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "akismet-bulk-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        try {
+            while (!stopped && comments.hasNext()) {
+                run.window.acquire();
+
+                TokenBucket bucket = rateLimit;
+                if (bucket != null) {
+                    try {
+                        bucket.acquire(TokenBucket.Priority.BACKGROUND);
+                    } catch (InterruptedException e) {
+                        run.window.release();
+                        throw e;
+                    }
+                }
+
+                workers.execute(run.new Check(index++, comments.next()));
+            }
+        } finally {
+            // Also ends the pauses of workers waiting for the circuit breaker
+            stopped = true;
+            workers.shutdown();
+            while (!workers.awaitTermination(1, TimeUnit.SECONDS)) {
+                // Wait for the comments in progress to complete
+            }
+
+            run.saveCheckpoint();
+            stopped = false;
+        }
+
+        return run.getCheckpoint();
+    }
+
+    /**
+     * State of one scan. Results wait in a ring of {@link #getWindow()} slots until every earlier comment is
+     * complete, which also bounds the number of comments in memory. One thread at a time drains the completed
+     * comments and passes them to the listener outside the lock, so a slow listener does not block the workers.
+     */
+    private class Run {
+
+        private final BulkScanListener listener;
+        private final File checkpointFile;
+        private final Semaphore window;
+        private final CommentRequest[] requests;
+        private final AkismetResult[] results;
+        private final boolean[] done;
+        private long complete;
+        private long failed = Long.MAX_VALUE;
+        private long saved;
+        private long savedAt = System.currentTimeMillis();
+        private boolean draining;
+
+        Run(long start, BulkScanListener listener, File checkpointFile) {
+            this.listener = listener;
+            this.checkpointFile = checkpointFile;
+            this.window = new Semaphore(getWindow());
+            this.requests = new CommentRequest[getWindow()];
+            this.results = new AkismetResult[getWindow()];
+            this.done = new boolean[getWindow()];
+            this.complete = start;
+            this.saved = start;
+        }
+
+        /**
+         * Return the number of leading complete comments
+         *
+         * @return Checkpoint
+         */
+        synchronized long getCheckpoint() {
+            return Math.min(complete, failed);
+        }
+
+        void completed(long index, CommentRequest request, AkismetResult result, boolean retryable) {
+            boolean emit = ordered;
+            if (!emit) {
+                deliver(index, request, result);
+            }
+
+            synchronized (this) {
+                int slot = (int) (index % done.length);
+                done[slot] = true;
+                requests[slot] = request;
+                results[slot] = result;
+                if (retryable) {
+                    failed = Math.min(failed, index);
+                }
+
+                if (draining) {
+                    // The draining thread picks this comment up
+                    return;
+                }
+                draining = true;
+            }
+
+            List<CommentRequest> batchRequests = new ArrayList<CommentRequest>();
+            List<AkismetResult> batchResults = new ArrayList<AkismetResult>();
+            while (true) {
+                batchRequests.clear();
+                batchResults.clear();
+                long first;
+                int released;
+                synchronized (this) {
+                    first = complete;
+                    while (done[(int) (complete % done.length)]) {
+                        int slot = (int) (complete % done.length);
+                        if (emit) {
+                            batchRequests.add(requests[slot]);
+                            batchResults.add(results[slot]);
+                        }
+                        requests[slot] = null;
+                        results[slot] = null;
+                        done[slot] = false;
+                        complete++;
+                    }
+
+                    released = (int) (complete - first);
+                    if (released == 0) {
+                        draining = false;
+                        break;
+                    }
+                }
+
+                for (int i = 0; i < batchRequests.size(); i++) {
+                    deliver(first + i, batchRequests.get(i), batchResults.get(i));
+                }
+
+                window.release(released);
+            }
+
+            if (checkpointFile != null && System.currentTimeMillis() - savedAt >= checkpointInterval) {
+                saveCheckpoint();
+            }
+        }
+
+        private void deliver(long index, CommentRequest request, AkismetResult result) {
+            try {
+                listener.onResult(index, request, result);
+            } catch (RuntimeException e) {
+                if (logger.isErrorEnabled()) {
+                    logger.error("Bulk scan listener failed for comment " + index, e);
+                }
+            }
+        }
+
+        synchronized void saveCheckpoint() {
+            long checkpoint = getCheckpoint();
+            if (checkpointFile == null || checkpoint == saved) {
+                return;
+            }
+
+            try {
+                writeCheckpoint(checkpointFile, checkpoint);
+                saved = checkpoint;
+                savedAt = System.currentTimeMillis();
+            } catch (IOException e) {
+                if (logger.isErrorEnabled()) {
+                    logger.error(e);
+                }
+            }
+        }
+
+        class Check implements Runnable {
+            private final long index;
+            private final CommentRequest request;
+            private boolean broken;
+
+            Check(long index, CommentRequest request) {
+                this.index = index;
+                this.request = request;
+            }
+
+            public void run() {
+                AkismetResult result = check();
+                int attempt = 1;
+                while (!broken && isTransient(result) && !stopped) {
+                    long delay;
+                    if (result.isFallback()) {
+                        // The circuit breaker is open, pause until it lets calls through again
+                        delay = PAUSE;
+                    } else if (attempt < ERROR_ATTEMPTS) {
+                        delay = errorRetry.getDelay(attempt++);
+                    } else {
+                        break;
+                    }
+
+                    try {
+                        Thread.sleep(delay);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                    result = check();
+                }
+
+                completed(index, request, result, !broken && isTransient(result));
+            }
+
+            private AkismetResult check() {
+                try {
+                    return akismet.akismetRequest(Akismet.FUNCTION_COMMENT_CHECK, request, TokenBucket.Priority.BACKGROUND,
+                            Long.MAX_VALUE);
+                } catch (RuntimeException e) {
+                    // The comment itself cannot be checked, so trying it again would fail the same way
+                    if (logger.isErrorEnabled()) {
+                        logger.error(e);
+                    }
+                    broken = true;
+                    return new AkismetResult(0, null, Verdict.ERROR, null, 0, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Check to see if a result is a transient failure: a fallback because the circuit breaker was open or the rate
+     * limit was reached, a call that was cancelled or got no answer, or a 5xx status
+     *
+     * @param result Result of a comment-check
+     * @return <code>true</code> if the comment should be checked again, <code>false</code> if it is complete
+     */
+    private static boolean isTransient(AkismetResult result) {
+        return result.isFallback() || result.isCancelled() || result.getHttpStatus() == 0
+                || result.getHttpStatus() >= HttpURLConnection.HTTP_INTERNAL_ERROR;
+    }
+
+    private static long readCheckpoint(File file) throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "US-ASCII"));
+        try {
+            String line = reader.readLine();
+            return line == null ? 0 : Long.parseLong(line.trim());
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid checkpoint " + file);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static void writeCheckpoint(File file, long complete) throws IOException {
+        File written = new File(file.getPath() + ".tmp");
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(written), "US-ASCII"));
+        try {
+            writer.write(complete + "\n");
+        } finally {
+            writer.close();
+        }
+
+        FeedbackJournal.replace(written, file);
+    }
+}
@@ -0,0 +1,328 @@
+/**
+ * Copyright (c) 2005-2007, David A. Czarnecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the "David A. Czarnecki" nor the names of
+ * its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * Products derived from this software may not be called "Akismet Java API",
+ * nor may "Akismet Java API" appear in their name, without prior written permission of
+ * David A. Czarnecki.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sf.akismet;
+
+/**
+ * Circuit breaker for calls to Akismet.
+ * <p></p>
+ * While <code>CLOSED</code>, calls go through and their outcome and latency are recorded in a rolling window.
+ * When the window holds at least the minimum number of calls and either the failure rate or the slow call rate
+ * reaches its threshold, the breaker opens. While <code>OPEN</code>, calls are refused without touching the
+ * network. After the open duration, the breaker is <code>HALF_OPEN</code> and lets a few trial calls through:
+ * if they all succeed it closes, if any fails it opens again.
+ * <p></p>
+ * Checking an open breaker is a volatile read and a clock read, so refused calls cost next to nothing.
+ *
+ * @version $Id$
+ */
+public class CircuitBreaker {
+
+    /**
+     * Circuit breaker state
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    public static final int DEFAULT_FAILURE_RATE_THRESHOLD = 50;
+    public static final int DEFAULT_SLOW_CALL_RATE_THRESHOLD = 80;
+    public static final long DEFAULT_SLOW_CALL_DURATION = 5000;
+    public static final int DEFAULT_MINIMUM_CALLS = 20;
+    public static final long DEFAULT_WINDOW = 10000;
+    public static final long DEFAULT_OPEN_DURATION = 30000;
+    public static final int DEFAULT_HALF_OPEN_CALLS = 3;
+
+    private static final int BUCKETS = 10;
+
+    private volatile int failureRateThreshold = DEFAULT_FAILURE_RATE_THRESHOLD;
+    private volatile int slowCallRateThreshold = DEFAULT_SLOW_CALL_RATE_THRESHOLD;
+    private volatile long slowCallDuration = DEFAULT_SLOW_CALL_DURATION;
+    private volatile int minimumCalls = DEFAULT_MINIMUM_CALLS;
+    private volatile long openDuration = DEFAULT_OPEN_DURATION;
+    private volatile int halfOpenCalls = DEFAULT_HALF_OPEN_CALLS;
+    private final long bucketDuration;
+
+    private volatile State state = State.CLOSED;
+    private volatile long openedAt;
+
+    // Guarded by this
+    private final long[] bucketStart = new long[BUCKETS];
+    private final int[] bucketCalls = new int[BUCKETS];
+    private final int[] bucketFailures = new int[BUCKETS];
+    private final int[] bucketSlowCalls = new int[BUCKETS];
+    private int halfOpenPermits;
+    private int halfOpenSuccesses;
+
+    /**
+     * Construct a circuit breaker with the default settings
+     */
+    public CircuitBreaker() {
+        this(DEFAULT_WINDOW);
+    }
+
+    /**
+     * Construct a circuit breaker
+     *
+     * @param window Length in milliseconds of the rolling window of recorded calls
+     * @throws IllegalArgumentException If the window is shorter than 10 milliseconds
+     */
+    public CircuitBreaker(long window) {
+        if (window < BUCKETS) {
+            throw new IllegalArgumentException("Window must be at least " + BUCKETS + " milliseconds");
+        }
+
+        this.bucketDuration = window / BUCKETS;
+    }
+
+    /**
+     * Check whether a call may go through. Every permitted call must be followed by a call to
+     * {@link #recordSuccess(long)}, {@link #recordFailure(long)} or {@link #recordCancelled()}.
+     *
+     * @return <code>true</code> if the call may go through, <code>false</code> if it should fail fast
+     */
+    public boolean allowRequest() {
+        State current = state;
+        if (current == State.CLOSED) {
+            return true;
+        }
+
+        if (current == State.OPEN && System.currentTimeMillis() - openedAt < openDuration) {
+            return false;
+        }
+
+        synchronized (this) {
+            if (state == State.OPEN) {
+                if (System.currentTimeMillis() - openedAt < openDuration) {
+                    return false;
+                }
+
+                state = State.HALF_OPEN;
+                halfOpenPermits = halfOpenCalls;
+                halfOpenSuccesses = 0;
+            }
+
+            if (state == State.CLOSED) {
+                return true;
+            }
+
+            if (halfOpenPermits > 0) {
+                halfOpenPermits--;
+                return true;
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * Record a call that completed
+     *
+     * @param duration Duration of the call in milliseconds
+     */
+    public synchronized void recordSuccess(long duration) {
+        if (state == State.HALF_OPEN) {
+            halfOpenSuccesses++;
+            if (halfOpenSuccesses >= halfOpenCalls) {
+                reset();
+            }
+
+            return;
+        }
+
+        record(false, duration >= slowCallDuration);
+    }
+
+    /**
+     * Record a call that failed
+     *
+     * @param duration Duration of the call in milliseconds
+     */
+    public synchronized void recordFailure(long duration) {
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+
+        record(true, duration >= slowCallDuration);
+    }
+
+    /**
+     * Record a call that was cancelled by the caller before it completed, such as a request aborted because its
+     * hedge answered first. The call counts neither as a success nor as a failure, and a half-open permit is
+     * returned.
+     */
+    public synchronized void recordCancelled() {
+        if (state == State.HALF_OPEN) {
+            halfOpenPermits++;
+        }
+    }
+
+    private void record(boolean failure, boolean slow) {
+        if (state != State.CLOSED) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        long start = now - (now % bucketDuration);
+        int bucket = (int) ((now / bucketDuration) % BUCKETS);
+        if (bucketStart[bucket] != start) {
+            bucketStart[bucket] = start;
+            bucketCalls[bucket] = 0;
+            bucketFailures[bucket] = 0;
+            bucketSlowCalls[bucket] = 0;
+        }
+
+        bucketCalls[bucket]++;
+        if (failure) {
+            bucketFailures[bucket]++;
+        }
+        if (slow) {
+            bucketSlowCalls[bucket]++;
+        }
+
+        long oldest = start - (BUCKETS - 1) * bucketDuration;
+        int calls = 0;
+        int failures = 0;
+        int slowCalls = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            if (bucketStart[i] >= oldest) {
+                calls += bucketCalls[i];
+                failures += bucketFailures[i];
+                slowCalls += bucketSlowCalls[i];
+            }
+        }
+
+        if (calls >= minimumCalls
+                && (failures * 100L >= (long) failureRateThreshold * calls || slowCalls * 100L >= (long) slowCallRateThreshold * calls)) {
+            open();
+        }
+    }
+
+    private void open() {
+        openedAt = System.currentTimeMillis();
+        state = State.OPEN;
+    }
+
+    /**
+     * Close the breaker and clear the recorded calls
+     */
+    public synchronized void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            bucketStart[i] = 0;
+            bucketCalls[i] = 0;
+            bucketFailures[i] = 0;
+            bucketSlowCalls[i] = 0;
+        }
+
+        state = State.CLOSED;
+    }
+
+    /**
+     * Return the current state
+     *
+     * @return State
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Sets the failure rate at which the breaker opens
+     *
+     * @param failureRateThreshold Percentage of failed calls in the window, 1 to 100
+     */
+    public void setFailureRateThreshold(int failureRateThreshold) {
+        if (failureRateThreshold < 1 || failureRateThreshold > 100) {
+            throw new IllegalArgumentException("Failure rate threshold must be between 1 and 100");
+        }
+
+        this.failureRateThreshold = failureRateThreshold;
+    }
+
+    /**
+     * Sets the slow call rate at which the breaker opens
+     *
+     * @param slowCallRateThreshold Percentage of slow calls in the window, 1 to 100
+     */
+    public void setSlowCallRateThreshold(int slowCallRateThreshold) {
+        if (slowCallRateThreshold < 1 || slowCallRateThreshold > 100) {
+            throw new IllegalArgumentException("Slow call rate threshold must be between 1 and 100");
+        }
+
+        this.slowCallRateThreshold = slowCallRateThreshold;
+    }
+
+    /**
+     * Sets the duration from which a call counts as slow
+     *
+     * @param slowCallDuration Duration in milliseconds
+     */
+    public void setSlowCallDuration(long slowCallDuration) {
+        this.slowCallDuration = slowCallDuration;
+    }
+
+    /**
+     * Sets the number of calls the window must hold before the rates are evaluated
+     *
+     * @param minimumCalls Minimum number of calls
+     */
+    public void setMinimumCalls(int minimumCalls) {
+        if (minimumCalls < 1) {
+            throw new IllegalArgumentException("Minimum calls must be at least 1");
+        }
+
+        this.minimumCalls = minimumCalls;
+    }
+
+    /**
+     * Sets how long the breaker stays open before letting trial calls through
+     *
+     * @param openDuration Duration in milliseconds
+     */
+    public void setOpenDuration(long openDuration) {
+        this.openDuration = openDuration;
+    }
+
+    /**
+     * Sets the number of trial calls that must succeed while half open to close the breaker
+     *
+     * @param halfOpenCalls Number of trial calls
+     */
+    public void setHalfOpenCalls(int halfOpenCalls) {
+        if (halfOpenCalls < 1) {
+            throw new IllegalArgumentException("Half open calls must be at least 1");
+        }
+
+        this.halfOpenCalls = halfOpenCalls;
+    }
+}
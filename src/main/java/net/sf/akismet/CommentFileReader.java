@@ -0,0 +1,442 @@
+/**
+ * Copyright (c) 2005-2007, David A. Czarnecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the "David A. Czarnecki" nor the names of
+ * its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * Products derived from this software may not be called "Akismet Java API",
+ * nor may "Akismet Java API" appear in their name, without prior written permission of
+ * David A. Czarnecki.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sf.akismet;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads stored comments one at a time from a file, for {@link BulkScanner}. Only the current comment is held
+ * in memory.
+ * <p></p>
+ * Fields are named after the Akismet API parameters: <code>user_ip</code>, <code>user_agent</code>,
+ * <code>referrer</code>, <code>permalink</code>, <code>comment_type</code>, <code>comment_author</code>,
+ * <code>comment_author_email</code>, <code>comment_author_url</code> and <code>comment_content</code>. Any other
+ * field is sent as an additional parameter. Two formats are read:
+ * <ul>
+ * <li>JSON lines: one flat JSON object per line, such as <code>{"user_ip":"192.0.2.1","comment_content":"Hello"}</code></li>
+ * <li>CSV: a header line naming the fields, then one comment per record; quoted fields may contain commas,
+ * doubled quotes and line breaks</li>
+ * </ul>
+ * Malformed records are logged and skipped.
+ *
+ * @version $Id$
+ */
+public class CommentFileReader implements Iterator<CommentRequest>, Closeable {
+
+    private static final Log logger = LogFactory.getLog(CommentFileReader.class);
+
+    private static final String ENCODING = "UTF-8";
+
+    private final BufferedReader reader;
+    private final boolean csv;
+    private String[] header;
+    private long line;
+    private CommentRequest next;
+
+    /**
+     * Open a file of JSON lines
+     *
+     * @param file File
+     * @return Reader
+     * @throws IOException If the file cannot be opened
+     */
+    public static CommentFileReader jsonLines(File file) throws IOException {
+        return new CommentFileReader(open(file), false);
+    }
+
+    /**
+     * Open a CSV file with a header line
+     *
+     * @param file File
+     * @return Reader
+     * @throws IOException If the file cannot be opened or has no header line
+     */
+    public static CommentFileReader csv(File file) throws IOException {
+        return new CommentFileReader(open(file), true);
+    }
+
+    /**
+     * Construct a reader
+     *
+     * @param reader Source of the comments, closed with this reader
+     * @param csv    <code>true</code> for CSV with a header line, <code>false</code> for JSON lines
+     * @throws IOException If the CSV header line cannot be read
+     */
+    public CommentFileReader(Reader reader, boolean csv) throws IOException {
+        if (reader == null) {
+            throw new IllegalArgumentException("Reader cannot be null");
+        }
+
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        this.csv = csv;
+
+        if (csv) {
+            List<String> fields = readRecord();
+            if (fields == null) {
+                throw new IOException("CSV header line is missing");
+            }
+            header = fields.toArray(new String[fields.size()]);
+        }
+    }
+
+    public boolean hasNext() {
+        if (next == null) {
+            try {
+                next = read();
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to read comments: " + e.getMessage());
+            }
+        }
+
+        return next != null;
+    }
+
+    public CommentRequest next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        CommentRequest request = next;
+        next = null;
+        return request;
+    }
+
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private CommentRequest read() throws IOException {
+        while (true) {
+            long start = line + 1;
+            Map<String, String> fields;
+
+            if (csv) {
+                List<String> values = readRecord();
+                if (values == null) {
+                    return null;
+                }
+                if (values.size() == 1 && values.get(0).length() == 0) {
+                    continue;
+                }
+                if (values.size() != header.length) {
+                    warn(start, "expected " + header.length + " fields, found " + values.size());
+                    continue;
+                }
+
+                fields = new LinkedHashMap<String, String>();
+                for (int i = 0; i < header.length; i++) {
+                    fields.put(header[i], values.get(i));
+                }
+            } else {
+                String text = reader.readLine();
+                if (text == null) {
+                    return null;
+                }
+                line++;
+
+                text = text.trim();
+                if (text.length() == 0) {
+                    continue;
+                }
+
+                fields = parseObject(text);
+                if (fields == null) {
+                    warn(start, "not a flat JSON object");
+                    continue;
+                }
+            }
+
+            return toRequest(fields);
+        }
+    }
+
+    private static CommentRequest toRequest(Map<String, String> fields) {
+        CommentRequest.Builder builder = new CommentRequest.Builder();
+        Iterator<Map.Entry<String, String>> iterator = fields.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, String> field = iterator.next();
+            String name = field.getKey();
+            String value = field.getValue();
+
+            if (Akismet.API_PARAMETER_USER_IP.equals(name)) {
+                builder.ipAddress(value);
+            } else if (Akismet.API_PARAMETER_USER_AGENT.equals(name)) {
+                builder.userAgent(value);
+            } else if (Akismet.API_PARAMETER_REFERRER.equals(name)) {
+                builder.referrer(value);
+            } else if (Akismet.API_PARAMETER_PERMALINK.equals(name)) {
+                builder.permalink(value);
+            } else if (Akismet.API_PARAMETER_COMMENT_TYPE.equals(name)) {
+                builder.commentType(value);
+            } else if (Akismet.API_PARAMETER_COMMENT_AUTHOR.equals(name)) {
+                builder.author(value);
+            } else if (Akismet.API_PARAMETER_COMMENT_AUTHOR_EMAIL.equals(name)) {
+                builder.authorEmail(value);
+            } else if (Akismet.API_PARAMETER_COMMENT_AUTHOR_URL.equals(name)) {
+                builder.authorURL(value);
+            } else if (Akismet.API_PARAMETER_COMMENT_CONTENT.equals(name)) {
+                builder.commentContent(value);
+            } else if (value != null) {
+                builder.other(name, value);
+            }
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Read one CSV record, which may span several lines
+     *
+     * @return Fields, or <code>null</code> at the end of the file
+     * @throws IOException If the file cannot be read
+     */
+    private List<String> readRecord() throws IOException {
+        String text = reader.readLine();
+        if (text == null) {
+            return null;
+        }
+        line++;
+
+        List<String> fields = new ArrayList<String>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        int i = 0;
+        while (true) {
+            if (i == text.length()) {
+                if (!quoted) {
+                    break;
+                }
+
+                // Line break inside a quoted field
+                text = reader.readLine();
+                if (text == null) {
+                    break;
+                }
+                line++;
+                field.append('\n');
+                i = 0;
+                continue;
+            }
+
+            char c = text.charAt(i++);
+            if (quoted) {
+                if (c == '"') {
+                    if (i < text.length() && text.charAt(i) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c != '\r') {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+
+        return fields;
+    }
+
+    /**
+     * Parse a flat JSON object. String values are kept, numbers and booleans are kept as written, and
+     * <code>null</code> values are dropped.
+     *
+     * @param text JSON text
+     * @return Fields, or <code>null</code> if the text is not a flat JSON object
+     */
+    static Map<String, String> parseObject(String text) {
+        Map<String, String> fields = new LinkedHashMap<String, String>();
+        int[] position = {skipWhitespace(text, 0)};
+
+        if (!expect(text, position, '{')) {
+            return null;
+        }
+        if (expect(text, position, '}')) {
+            return position[0] == text.length() ? fields : null;
+        }
+
+        while (true) {
+            String name = parseString(text, position);
+            if (name == null || !expect(text, position, ':')) {
+                return null;
+            }
+
+            String value;
+            if (position[0] < text.length() && text.charAt(position[0]) == '"') {
+                value = parseString(text, position);
+                if (value == null) {
+                    return null;
+                }
+            } else {
+                int start = position[0];
+                while (position[0] < text.length() && ",} \t".indexOf(text.charAt(position[0])) < 0) {
+                    position[0]++;
+                }
+                value = text.substring(start, position[0]);
+                if (value.length() == 0 || value.charAt(0) == '{' || value.charAt(0) == '[') {
+                    return null;
+                }
+                if ("null".equals(value)) {
+                    value = null;
+                }
+                position[0] = skipWhitespace(text, position[0]);
+            }
+
+            if (value != null) {
+                fields.put(name, value);
+            }
+
+            if (expect(text, position, '}')) {
+                return position[0] == text.length() ? fields : null;
+            }
+            if (!expect(text, position, ',')) {
+                return null;
+            }
+        }
+    }
+
+    private static String parseString(String text, int[] position) {
+        int i = position[0];
+        if (i >= text.length() || text.charAt(i) != '"') {
+            return null;
+        }
+        i++;
+
+        StringBuilder value = new StringBuilder();
+        while (i < text.length()) {
+            char c = text.charAt(i++);
+            if (c == '"') {
+                position[0] = skipWhitespace(text, i);
+                return value.toString();
+            }
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            if (i >= text.length()) {
+                return null;
+            }
+
+            c = text.charAt(i++);
+            switch (c) {
+                case 'b':
+                    value.append('\b');
+                    break;
+                case 'f':
+                    value.append('\f');
+                    break;
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 'r':
+                    value.append('\r');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                case 'u':
+                    if (i + 4 > text.length()) {
+                        return null;
+                    }
+                    try {
+                        value.append((char) Integer.parseInt(text.substring(i, i + 4), 16));
+                    } catch (NumberFormatException e) {
+                        return null;
+                    }
+                    i += 4;
+                    break;
+                default:
+                    value.append(c);
+            }
+        }
+
+        return null;
+    }
+
+    private static boolean expect(String text, int[] position, char c) {
+        if (position[0] < text.length() && text.charAt(position[0]) == c) {
+            position[0] = skipWhitespace(text, position[0] + 1);
+            return true;
+        }
+
+        return false;
+    }
+
+    private static int skipWhitespace(String text, int i) {
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+
+        return i;
+    }
+
+    private static BufferedReader open(File file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("File cannot be null");
+        }
+
+        return new BufferedReader(new InputStreamReader(new FileInputStream(file), ENCODING));
+    }
+
+    private void warn(long start, String problem) {
+        if (logger.isWarnEnabled()) {
+            logger.warn("Skipping comment at line " + start + ": " + problem);
+        }
+    }
+}
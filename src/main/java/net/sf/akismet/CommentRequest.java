@@ -0,0 +1,552 @@
+/**
+ * Copyright (c) 2005-2007, David A. Czarnecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the "David A. Czarnecki" nor the names of
+ * its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * Products derived from this software may not be called "Akismet Java API",
+ * nor may "Akismet Java API" appear in their name, without prior written permission of
+ * David A. Czarnecki.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sf.akismet;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Immutable description of a comment for comment-check, submit-spam and submit-ham.
+ * <p></p>
+ * The form body is encoded once, as UTF-8 <code>application/x-www-form-urlencoded</code> bytes, when the request
+ * is built. The same request can then be checked, later submitted as spam or ham, used as a cache key and
+ * retried without being encoded again. The blog is not part of the request; it is added by {@link Akismet}.
+ * <p></p>
+ * <pre>
+ * Usage:
+ *
+ * CommentRequest request = new CommentRequest.Builder()
+ *         .ipAddress("x.y.z.w")
+ *         .userAgent("Mozilla/5.0 (...)")
+ *         .commentType(Akismet.COMMENT_TYPE_COMMENT)
+ *         .commentContent("VIAGRA! LOTS OF VIAGRA!")
+ *         .build();
+ * </pre>
+ *
+ * @version $Id$
+ */
+public final class CommentRequest {
+
+    private static final String ENCODING = "UTF-8";
+    private static final byte[] HEX = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F'};
+
+    static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    static final long FNV_PRIME = 0x100000001b3L;
+
+    private final String ipAddress;
+    private final String userAgent;
+    private final String referrer;
+    private final String permalink;
+    private final String commentType;
+    private final String author;
+    private final String authorEmail;
+    private final String authorURL;
+    private final String commentContent;
+    private final SortedMap<String, String> other;
+    private final byte[] body;
+    private final long fingerprint;
+
+    private CommentRequest(Builder builder) {
+        this.ipAddress = builder.ipAddress;
+        this.userAgent = builder.userAgent;
+        this.referrer = builder.referrer;
+        this.permalink = builder.permalink;
+        this.commentType = builder.commentType;
+        this.author = builder.author;
+        this.authorEmail = builder.authorEmail;
+        this.authorURL = builder.authorURL;
+        this.commentContent = builder.commentContent;
+        this.other = Collections.unmodifiableSortedMap(new TreeMap<String, String>(builder.other));
+        this.body = encode();
+        this.fingerprint = fingerprint(FNV_OFFSET_BASIS, body);
+    }
+
+    /**
+     * Create a request from the parameters of
+     * {@link Akismet#commentCheck(String, String, String, String, String, String, String, String, String, java.util.Map)}
+     *
+     * @param ipAddress      IP address of the comment submitter
+     * @param userAgent      User agent information
+     * @param referrer       The content of the HTTP_REFERER header should be sent here
+     * @param permalink      The permanent location of the entry the comment was submitted to
+     * @param commentType    May be blank, comment, trackback, pingback, or a made up value like "registration"
+     * @param author         Submitted name with the comment
+     * @param authorEmail    Submitted email address
+     * @param authorURL      Commenter URL
+     * @param commentContent The content that was submitted
+     * @param other          Additional key/value information about the request, entries with a <code>null</code> key or value are skipped
+     * @return Request
+     */
+    public static CommentRequest of(String ipAddress, String userAgent, String referrer, String permalink, String commentType,
+                                    String author, String authorEmail, String authorURL, String commentContent, Map other) {
+        Builder builder = new Builder()
+                .ipAddress(ipAddress)
+                .userAgent(userAgent)
+                .referrer(referrer)
+                .permalink(permalink)
+                .commentType(commentType)
+                .author(author)
+                .authorEmail(authorEmail)
+                .authorURL(authorURL)
+                .commentContent(commentContent);
+
+        if (other != null && other.size() > 0) {
+            Iterator entries = other.entrySet().iterator();
+            while (entries.hasNext()) {
+                Map.Entry entry = (Map.Entry) entries.next();
+                if (entry.getKey() != null && entry.getValue() != null) {
+                    builder.other(entry.getKey().toString(), entry.getValue().toString());
+                }
+            }
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Create a request from a form body produced by {@link #getEncodedBody()}
+     *
+     * @param encodedBody Encoded form body
+     * @return Request
+     * @throws IllegalArgumentException If the body cannot be decoded
+     */
+    static CommentRequest parse(String encodedBody) {
+        Builder builder = new Builder();
+        int start = 0;
+        while (start < encodedBody.length()) {
+            int end = encodedBody.indexOf('&', start);
+            if (end < 0) {
+                end = encodedBody.length();
+            }
+
+            int separator = encodedBody.indexOf('=', start);
+            if (separator > start && separator < end) {
+                String name = urlDecode(encodedBody.substring(start, separator));
+                String value = urlDecode(encodedBody.substring(separator + 1, end));
+
+                if (Akismet.API_PARAMETER_USER_IP.equals(name)) {
+                    builder.ipAddress(value);
+                } else if (Akismet.API_PARAMETER_USER_AGENT.equals(name)) {
+                    builder.userAgent(value);
+                } else if (Akismet.API_PARAMETER_REFERRER.equals(name)) {
+                    builder.referrer(value);
+                } else if (Akismet.API_PARAMETER_PERMALINK.equals(name)) {
+                    builder.permalink(value);
+                } else if (Akismet.API_PARAMETER_COMMENT_TYPE.equals(name)) {
+                    builder.commentType(value);
+                } else if (Akismet.API_PARAMETER_COMMENT_AUTHOR.equals(name)) {
+                    builder.author(value);
+                } else if (Akismet.API_PARAMETER_COMMENT_AUTHOR_EMAIL.equals(name)) {
+                    builder.authorEmail(value);
+                } else if (Akismet.API_PARAMETER_COMMENT_AUTHOR_URL.equals(name)) {
+                    builder.authorURL(value);
+                } else if (Akismet.API_PARAMETER_COMMENT_CONTENT.equals(name)) {
+                    builder.commentContent(value);
+                } else {
+                    builder.other(name, value);
+                }
+            }
+
+            start = end + 1;
+        }
+
+        return builder.build();
+    }
+
+    private static String urlDecode(String value) {
+        try {
+            return URLDecoder.decode(value, ENCODING);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e.getMessage());
+        }
+    }
+
+    /**
+     * Encode the form body. Parameters are written in a fixed order followed by the <code>other</code> entries
+     * sorted by key, so equal requests always encode to equal bytes. The user IP is always present, as an empty
+     * value if it was not given.
+     *
+     * @return Encoded form body
+     */
+    private byte[] encode() {
+        int estimate = 32 + length(ipAddress) + length(userAgent) + length(referrer) + length(permalink)
+                + length(commentType) + length(author) + length(authorEmail) + length(authorURL) + length(commentContent);
+
+        FormBuffer buffer = new FormBuffer(estimate + estimate / 4);
+        buffer.append(Akismet.API_PARAMETER_USER_IP, (ipAddress == null) ? "" : ipAddress);
+        buffer.append(Akismet.API_PARAMETER_USER_AGENT, userAgent);
+        buffer.append(Akismet.API_PARAMETER_REFERRER, referrer);
+        buffer.append(Akismet.API_PARAMETER_PERMALINK, permalink);
+        buffer.append(Akismet.API_PARAMETER_COMMENT_TYPE, commentType);
+        buffer.append(Akismet.API_PARAMETER_COMMENT_AUTHOR, author);
+        buffer.append(Akismet.API_PARAMETER_COMMENT_AUTHOR_EMAIL, authorEmail);
+        buffer.append(Akismet.API_PARAMETER_COMMENT_AUTHOR_URL, authorURL);
+        buffer.append(Akismet.API_PARAMETER_COMMENT_CONTENT, commentContent);
+
+        for (Map.Entry<String, String> entry : other.entrySet()) {
+            buffer.append(entry.getKey(), entry.getValue());
+        }
+
+        return buffer.toByteArray();
+    }
+
+    private static int length(String value) {
+        return (value == null) ? 0 : value.length();
+    }
+
+    /**
+     * Continue a 64-bit FNV-1a hash over bytes
+     *
+     * @param hash  Hash so far
+     * @param bytes Bytes
+     * @return Hash
+     */
+    static long fingerprint(long hash, byte[] bytes) {
+        for (int i = 0; i < bytes.length; i++) {
+            hash = (hash ^ (bytes[i] & 0xff)) * FNV_PRIME;
+        }
+
+        return hash;
+    }
+
+    /**
+     * Return the encoded form body without copying it. Callers must not modify the array.
+     *
+     * @return Encoded form body
+     */
+    byte[] body() {
+        return body;
+    }
+
+    /**
+     * Return a copy of the encoded form body
+     *
+     * @return UTF-8 <code>application/x-www-form-urlencoded</code> bytes, without the blog
+     */
+    public byte[] getEncodedBody() {
+        return body.clone();
+    }
+
+    /**
+     * Return a 64-bit fingerprint of the encoded form body. Equal requests have equal fingerprints.
+     *
+     * @return Fingerprint
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    public String getIpAddress() {
+        return ipAddress;
+    }
+
+    public String getUserAgent() {
+        return userAgent;
+    }
+
+    public String getReferrer() {
+        return referrer;
+    }
+
+    public String getPermalink() {
+        return permalink;
+    }
+
+    public String getCommentType() {
+        return commentType;
+    }
+
+    public String getAuthor() {
+        return author;
+    }
+
+    public String getAuthorEmail() {
+        return authorEmail;
+    }
+
+    public String getAuthorURL() {
+        return authorURL;
+    }
+
+    public String getCommentContent() {
+        return commentContent;
+    }
+
+    /**
+     * Return the additional key/value information about the request
+     *
+     * @return Unmodifiable map, sorted by key
+     */
+    public Map<String, String> getOther() {
+        return other;
+    }
+
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (!(o instanceof CommentRequest)) {
+            return false;
+        }
+
+        CommentRequest that = (CommentRequest) o;
+        return fingerprint == that.fingerprint && java.util.Arrays.equals(body, that.body);
+    }
+
+    public int hashCode() {
+        return (int) (fingerprint ^ (fingerprint >>> 32));
+    }
+
+    public String toString() {
+        return "CommentRequest[" + new String(body, 0, Math.min(body.length, 200)) + "]";
+    }
+
+    /**
+     * Builder for {@link CommentRequest}. Every parameter is optional.
+     */
+    public static class Builder {
+
+        private String ipAddress;
+        private String userAgent;
+        private String referrer;
+        private String permalink;
+        private String commentType;
+        private String author;
+        private String authorEmail;
+        private String authorURL;
+        private String commentContent;
+        private final Map<String, String> other = new TreeMap<String, String>();
+
+        /**
+         * @param ipAddress IP address of the comment submitter
+         * @return This builder
+         */
+        public Builder ipAddress(String ipAddress) {
+            this.ipAddress = ipAddress;
+            return this;
+        }
+
+        /**
+         * @param userAgent User agent information
+         * @return This builder
+         */
+        public Builder userAgent(String userAgent) {
+            this.userAgent = userAgent;
+            return this;
+        }
+
+        /**
+         * @param referrer The content of the HTTP_REFERER header
+         * @return This builder
+         */
+        public Builder referrer(String referrer) {
+            this.referrer = referrer;
+            return this;
+        }
+
+        /**
+         * @param permalink The permanent location of the entry the comment was submitted to
+         * @return This builder
+         */
+        public Builder permalink(String permalink) {
+            this.permalink = permalink;
+            return this;
+        }
+
+        /**
+         * @param commentType May be blank, comment, trackback, pingback, or a made up value like "registration"
+         * @return This builder
+         */
+        public Builder commentType(String commentType) {
+            this.commentType = commentType;
+            return this;
+        }
+
+        /**
+         * @param author Submitted name with the comment
+         * @return This builder
+         */
+        public Builder author(String author) {
+            this.author = author;
+            return this;
+        }
+
+        /**
+         * @param authorEmail Submitted email address
+         * @return This builder
+         */
+        public Builder authorEmail(String authorEmail) {
+            this.authorEmail = authorEmail;
+            return this;
+        }
+
+        /**
+         * @param authorURL Commenter URL
+         * @return This builder
+         */
+        public Builder authorURL(String authorURL) {
+            this.authorURL = authorURL;
+            return this;
+        }
+
+        /**
+         * @param commentContent The content that was submitted
+         * @return This builder
+         */
+        public Builder commentContent(String commentContent) {
+            this.commentContent = commentContent;
+            return this;
+        }
+
+        /**
+         * Add additional key/value information about the request, such as HTTP headers or server variables
+         *
+         * @param name  Name
+         * @param value Value
+         * @return This builder
+         */
+        public Builder other(String name, String value) {
+            if (name == null || value == null) {
+                throw new IllegalArgumentException("Name and value cannot be null");
+            }
+
+            other.put(name, value);
+            return this;
+        }
+
+        /**
+         * Build the request, encoding its form body
+         *
+         * @return Request
+         */
+        public CommentRequest build() {
+            return new CommentRequest(this);
+        }
+    }
+
+    /**
+     * Growable byte buffer that percent-encodes form parameters as UTF-8 without intermediate strings
+     */
+    static final class FormBuffer {
+
+        private byte[] bytes;
+        private int length;
+
+        FormBuffer(int capacity) {
+            bytes = new byte[Math.max(capacity, 16)];
+        }
+
+        /**
+         * Append a parameter, preceded by <code>&amp;</code> unless it is the first one
+         *
+         * @param name  Parameter name
+         * @param value Parameter value, the parameter is skipped if <code>null</code>
+         */
+        void append(String name, String value) {
+            if (value == null) {
+                return;
+            }
+
+            if (length > 0) {
+                put((byte) '&');
+            }
+
+            encode(name);
+            put((byte) '=');
+            encode(value);
+        }
+
+        private void encode(String value) {
+            int count = value.length();
+            for (int i = 0; i < count; i++) {
+                char c = value.charAt(i);
+                if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                        || c == '-' || c == '_' || c == '.' || c == '*') {
+                    put((byte) c);
+                } else if (c == ' ') {
+                    put((byte) '+');
+                } else if (c < 0x80) {
+                    escape(c);
+                } else if (c < 0x800) {
+                    escape(0xc0 | (c >> 6));
+                    escape(0x80 | (c & 0x3f));
+                } else if (Character.isHighSurrogate(c) && i + 1 < count && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    escape(0xf0 | (codePoint >> 18));
+                    escape(0x80 | ((codePoint >> 12) & 0x3f));
+                    escape(0x80 | ((codePoint >> 6) & 0x3f));
+                    escape(0x80 | (codePoint & 0x3f));
+                } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                    // Unpaired surrogate, replaced as String.getBytes would
+                    escape('?');
+                } else {
+                    escape(0xe0 | (c >> 12));
+                    escape(0x80 | ((c >> 6) & 0x3f));
+                    escape(0x80 | (c & 0x3f));
+                }
+            }
+        }
+
+        private void escape(int b) {
+            ensure(3);
+            bytes[length++] = '%';
+            bytes[length++] = HEX[(b >> 4) & 0x0f];
+            bytes[length++] = HEX[b & 0x0f];
+        }
+
+        private void put(byte b) {
+            ensure(1);
+            bytes[length++] = b;
+        }
+
+        private void ensure(int needed) {
+            if (length + needed > bytes.length) {
+                byte[] grown = new byte[Math.max(bytes.length * 2, length + needed)];
+                System.arraycopy(bytes, 0, grown, 0, length);
+                bytes = grown;
+            }
+        }
+
+        byte[] toByteArray() {
+            byte[] result = new byte[length];
+            System.arraycopy(bytes, 0, result, 0, length);
+            return result;
+        }
+    }
+}
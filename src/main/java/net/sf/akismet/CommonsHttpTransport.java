@@ -0,0 +1,288 @@
+/**
+ * Copyright (c) 2005-2007, David A. Czarnecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the "David A. Czarnecki" nor the names of
+ * its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * Products derived from this software may not be called "Akismet Java API",
+ * nor may "Akismet Java API" appear in their name, without prior written permission of
+ * David A. Czarnecki.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sf.akismet;
+
+import org.apache.commons.httpclient.DefaultHttpMethodRetryHandler;
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HostConfiguration;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpConnectionManager;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.UsernamePasswordCredentials;
+import org.apache.commons.httpclient.auth.AuthScope;
+import org.apache.commons.httpclient.methods.PostMethod;
+import org.apache.commons.httpclient.params.HttpClientParams;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.apache.commons.httpclient.util.IdleConnectionTimeoutThread;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Transport using Commons HttpClient 3, over HTTP/1.1
+ *
+ * @version $Id$
+ */
+public class CommonsHttpTransport implements AkismetTransport {
+
+    private static final String USER_AGENT_HEADER = "User-Agent";
+
+    private final HttpClient httpClient;
+    private volatile MultiThreadedHttpConnectionManager connectionManager;
+    private IdleConnectionTimeoutThread idleConnectionTimeoutThread;
+    private final ConcurrentMap<Thread, PostMethod> inProgress = new ConcurrentHashMap<Thread, PostMethod>();
+
+    /**
+     * Construct a transport with a single connection, which must not be shared between threads. The transport
+     * switches to a pool when {@link Akismet} starts using it from several threads.
+     */
+    public CommonsHttpTransport() {
+        connectionManager = null;
+        httpClient = new HttpClient();
+        configureHttpClient();
+    }
+
+    /**
+     * Construct a transport with a pool of connections that can be shared between threads. Connections are
+     * kept alive between calls.
+     *
+     * @param maxConnectionsPerHost Maximum number of pooled connections to a single Akismet host
+     * @param maxTotalConnections   Maximum number of pooled connections across all Akismet hosts
+     * @throws IllegalArgumentException If either connection limit is less than 1
+     */
+    public CommonsHttpTransport(int maxConnectionsPerHost, int maxTotalConnections) {
+        if (maxConnectionsPerHost < 1) {
+            throw new IllegalArgumentException("Maximum connections per host must be at least 1");
+        }
+
+        if (maxTotalConnections < 1) {
+            throw new IllegalArgumentException("Maximum total connections must be at least 1");
+        }
+
+        connectionManager = createConnectionManager(maxConnectionsPerHost, maxTotalConnections);
+        httpClient = new HttpClient(connectionManager);
+        configureHttpClient();
+    }
+
+    /**
+     * Create a pool of connections to Akismet
+     *
+     * @param maxConnectionsPerHost Maximum number of pooled connections to a single Akismet host
+     * @param maxTotalConnections   Maximum number of pooled connections across all Akismet hosts
+     * @return Connection manager
+     */
+    private static MultiThreadedHttpConnectionManager createConnectionManager(int maxConnectionsPerHost, int maxTotalConnections) {
+        MultiThreadedHttpConnectionManager connectionManager = new MultiThreadedHttpConnectionManager();
+        HttpConnectionManagerParams connectionManagerParams = connectionManager.getParams();
+        connectionManagerParams.setDefaultMaxConnectionsPerHost(maxConnectionsPerHost);
+        connectionManagerParams.setMaxTotalConnections(maxTotalConnections);
+        connectionManagerParams.setStaleCheckingEnabled(true);
+        return connectionManager;
+    }
+
+    /**
+     * Switch a single connection transport to a pool with the default limits, keeping its timeouts, so that
+     * it can be used by several threads. The connection of the replaced manager is closed, or if a call is using
+     * it, closed when that call completes. Does nothing if the transport already pools connections.
+     */
+    void usePool() {
+        if (connectionManager != null) {
+            return;
+        }
+
+        synchronized (this) {
+            if (connectionManager != null) {
+                return;
+            }
+
+            HttpConnectionManager single = httpClient.getHttpConnectionManager();
+            HttpConnectionManagerParams singleParams = single.getParams();
+            MultiThreadedHttpConnectionManager pool = createConnectionManager(Akismet.DEFAULT_MAX_CONNECTIONS_PER_HOST,
+                    Akismet.DEFAULT_MAX_TOTAL_CONNECTIONS);
+            pool.getParams().setConnectionTimeout(singleParams.getConnectionTimeout());
+            pool.getParams().setSoTimeout(singleParams.getSoTimeout());
+            httpClient.setHttpConnectionManager(pool);
+            connectionManager = pool;
+
+            single.closeIdleConnections(0);
+        }
+    }
+
+    /**
+     * Apply the common client parameters
+     */
+    private void configureHttpClient() {
+        HttpClientParams httpClientParams = new HttpClientParams();
+        DefaultHttpMethodRetryHandler defaultHttpMethodRetryHandler = new DefaultHttpMethodRetryHandler(0, false);
+        httpClientParams.setParameter(USER_AGENT_HEADER, Akismet.USER_AGENT_VALUE);
+        httpClientParams.setParameter(HttpClientParams.RETRY_HANDLER, defaultHttpMethodRetryHandler);
+        httpClient.setParams(httpClientParams);
+        setTimeouts(Akismet.DEFAULT_CONNECTION_TIMEOUT, Akismet.DEFAULT_SOCKET_TIMEOUT);
+    }
+
+    public Response post(String url, byte[] prefix, byte[] body) throws IOException {
+        PostMethod post = new PostMethod(url);
+        post.setRequestEntity(new FormRequestEntity(prefix, body));
+
+        HttpConnectionManager manager = httpClient.getHttpConnectionManager();
+        Thread thread = Thread.currentThread();
+        inProgress.put(thread, post);
+        try {
+            int status = httpClient.executeMethod(post);
+            String result = post.getResponseBodyAsString();
+            return new Response(status, result, readHeaders(post));
+        } finally {
+            inProgress.remove(thread);
+            post.releaseConnection();
+
+            if (manager != httpClient.getHttpConnectionManager()) {
+                // The transport switched to a pool during this call, close the connection of the replaced manager
+                manager.closeIdleConnections(0);
+            }
+        }
+    }
+
+    /**
+     * Abort the request a thread is waiting for, if any, closing its connection
+     *
+     * @param thread Thread in {@link #post(String, byte[], byte[])}
+     */
+    void abort(Thread thread) {
+        PostMethod post = inProgress.get(thread);
+        if (post != null) {
+            post.abort();
+        }
+    }
+
+    /**
+     * Read the Akismet response headers of a call
+     *
+     * @param post Executed method
+     * @return Header values by name, or <code>null</code> if none of the headers were sent
+     */
+    private static Map<String, String> readHeaders(PostMethod post) {
+        Map<String, String> headers = null;
+        for (int i = 0; i < AkismetResult.HEADERS.length; i++) {
+            Header header = post.getResponseHeader(AkismetResult.HEADERS[i]);
+            if (header != null) {
+                if (headers == null) {
+                    headers = new HashMap<String, String>(4);
+                }
+                headers.put(AkismetResult.HEADERS[i], header.getValue());
+            }
+        }
+
+        return headers;
+    }
+
+    public void setProxy(String proxyHost, int proxyPort) {
+        HostConfiguration hostConfiguration = new HostConfiguration();
+        hostConfiguration.setProxy(proxyHost, proxyPort);
+
+        httpClient.setHostConfiguration(hostConfiguration);
+    }
+
+    public void setProxyCredentials(String proxyUsername, String proxyPassword) {
+        httpClient.getState().setProxyCredentials(AuthScope.ANY, new UsernamePasswordCredentials(proxyUsername, proxyPassword));
+    }
+
+    /**
+     * Sets the connect and read timeouts. The connect timeout also bounds the time spent waiting for a free
+     * pooled connection. A timeout of <code>0</code> means wait indefinitely.
+     *
+     * @param connectionTimeout Time in milliseconds to wait for a connection to be established
+     * @param socketTimeout     Time in milliseconds to wait for data on an established connection
+     */
+    public void setTimeouts(int connectionTimeout, int socketTimeout) {
+        HttpConnectionManagerParams connectionManagerParams = httpClient.getHttpConnectionManager().getParams();
+        connectionManagerParams.setConnectionTimeout(connectionTimeout);
+        connectionManagerParams.setSoTimeout(socketTimeout);
+        httpClient.getParams().setConnectionManagerTimeout(connectionTimeout);
+    }
+
+    /**
+     * Close pooled connections that have been idle for longer than the given timeout. The check runs on a
+     * background daemon thread.
+     *
+     * @param idleTimeout Time in milliseconds after which an idle connection is closed
+     * @throws IllegalStateException    If this transport was not constructed with a connection pool
+     * @throws IllegalArgumentException If the timeout is less than 1
+     */
+    public synchronized void setIdleConnectionTimeout(long idleTimeout) {
+        if (connectionManager == null) {
+            throw new IllegalStateException("Idle connection timeout requires a pooled instance");
+        }
+
+        if (idleTimeout < 1) {
+            throw new IllegalArgumentException("Idle connection timeout must be at least 1");
+        }
+
+        if (idleConnectionTimeoutThread == null) {
+            idleConnectionTimeoutThread = new IdleConnectionTimeoutThread();
+            idleConnectionTimeoutThread.setName("akismet-idle-connection-timeout");
+            idleConnectionTimeoutThread.addConnectionManager(connectionManager);
+            idleConnectionTimeoutThread.setConnectionTimeout(idleTimeout);
+            idleConnectionTimeoutThread.setTimeoutInterval(Math.max(idleTimeout / 2, 1));
+            idleConnectionTimeoutThread.start();
+        } else {
+            idleConnectionTimeoutThread.setConnectionTimeout(idleTimeout);
+            idleConnectionTimeoutThread.setTimeoutInterval(Math.max(idleTimeout / 2, 1));
+        }
+    }
+
+    /**
+     * Return the number of connections held by the pool, in use or idle
+     *
+     * @return Number of pooled connections, <code>0</code> if this transport does not pool connections
+     */
+    public int getConnectionsInPool() {
+        return connectionManager == null ? 0 : connectionManager.getConnectionsInPool();
+    }
+
+    /**
+     * Close the pooled connections and stop the idle connection thread, if any
+     */
+    public synchronized void shutdown() {
+        if (idleConnectionTimeoutThread != null) {
+            idleConnectionTimeoutThread.shutdown();
+            idleConnectionTimeoutThread = null;
+        }
+
+        if (connectionManager != null) {
+            connectionManager.shutdown();
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/**
+ * Copyright (c) 2005-2007, David A. Czarnecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the "David A. Czarnecki" nor the names of
+ * its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * Products derived from this software may not be called "Akismet Java API",
+ * nor may "Akismet Java API" appear in their name, without prior written permission of
+ * David A. Czarnecki.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sf.akismet;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only journal of queued feedback. Each queued submission is written as <code>+id&lt;TAB&gt;feedback</code>
+ * and each delivered submission as <code>-id</code>, every record ending with a newline. When the journal is
+ * opened, submissions without a matching delivery line are kept and the file is compacted to contain only those.
+ * A last line without a newline was torn by a crash and is ignored, as are lines that cannot be decoded. The
+ * journal is compacted again after every {@link #COMPACT_INTERVAL} deliveries, so that it does not grow without
+ * bound while a queue runs.
+ *
+ * @version $Id$
+ */
+class FeedbackJournal {
+
+    static final int COMPACT_INTERVAL = 1000;
+
+    private static final String ENCODING = "UTF-8";
+
+    private final File file;
+    private final Map<Long, FeedbackQueue.Feedback> entries = new LinkedHashMap<Long, FeedbackQueue.Feedback>();
+    private final List<FeedbackQueue.Feedback> pendingAtOpen;
+    private Writer writer;
+    private long nextId = 1;
+    private int removedSinceCompact;
+
+    /**
+     * Open the journal, reading any feedback left pending by a previous queue
+     *
+     * @param file Journal file, created if it does not exist
+     * @throws IOException If the journal cannot be read or written
+     */
+    FeedbackJournal(File file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("Journal file cannot be null");
+        }
+
+        this.file = file;
+
+        if (file.exists()) {
+            String content = new String(Files.readAllBytes(file.toPath()), ENCODING);
+
+            // Only lines ending with a newline were written completely
+            int start = 0;
+            int end;
+            while ((end = content.indexOf('\n', start)) >= 0) {
+                read(content.substring(start, end));
+                start = end + 1;
+            }
+        }
+
+        pendingAtOpen = new ArrayList<FeedbackQueue.Feedback>(entries.values());
+
+        compact();
+
+        writer = open();
+    }
+
+    /**
+     * Apply a single journal line to the pending entries
+     *
+     * @param line Line without its newline
+     */
+    private void read(String line) {
+        if (line.length() < 2) {
+            return;
+        }
+
+        try {
+            if (line.charAt(0) == '+') {
+                int separator = line.indexOf('\t');
+                if (separator > 0) {
+                    long id = Long.parseLong(line.substring(1, separator));
+                    FeedbackQueue.Feedback feedback = FeedbackQueue.Feedback.decode(line.substring(separator + 1));
+                    feedback.journalId = id;
+                    entries.put(Long.valueOf(id), feedback);
+                    nextId = Math.max(nextId, id + 1);
+                }
+            } else if (line.charAt(0) == '-') {
+                entries.remove(Long.valueOf(Long.parseLong(line.substring(1))));
+            }
+        } catch (IllegalArgumentException e) {
+            // A corrupt line, skip it
+        }
+    }
+
+    private Writer open() throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), ENCODING));
+    }
+
+    /**
+     * Rewrite the journal with only the pending entries
+     *
+     * @throws IOException If the journal cannot be written
+     */
+    private void compact() throws IOException {
+        File compacted = new File(file.getPath() + ".tmp");
+        Writer compactWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(compacted), ENCODING));
+        try {
+            Iterator<FeedbackQueue.Feedback> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                FeedbackQueue.Feedback feedback = iterator.next();
+                compactWriter.write("+" + feedback.journalId + "\t" + feedback.encoded + "\n");
+            }
+        } finally {
+            compactWriter.close();
+        }
+
+        replace(compacted, file);
+        removedSinceCompact = 0;
+    }
+
+    /**
+     * Replace a file with another in a single step, so that a crash leaves either the old or the new file
+     *
+     * @param source Replacement
+     * @param target File to replace
+     * @throws IOException If the file cannot be replaced
+     */
+    static void replace(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Return the feedback that was pending when the journal was opened
+     *
+     * @return Pending feedback in the order it was queued
+     */
+    List<FeedbackQueue.Feedback> getPending() {
+        return pendingAtOpen;
+    }
+
+    /**
+     * Record queued feedback
+     *
+     * @param feedback Feedback
+     * @throws IOException If the journal cannot be written
+     */
+    synchronized void append(FeedbackQueue.Feedback feedback) throws IOException {
+        feedback.journalId = nextId++;
+        entries.put(Long.valueOf(feedback.journalId), feedback);
+        writer.write("+" + feedback.journalId + "\t" + feedback.encoded + "\n");
+        writer.flush();
+    }
+
+    /**
+     * Record delivered feedback, compacting the journal every {@link #COMPACT_INTERVAL} deliveries
+     *
+     * @param feedback Feedback
+     * @throws IOException If the journal cannot be written
+     */
+    synchronized void remove(FeedbackQueue.Feedback feedback) throws IOException {
+        if (feedback.journalId == 0) {
+            return;
+        }
+
+        entries.remove(Long.valueOf(feedback.journalId));
+        writer.write("-" + feedback.journalId + "\n");
+        writer.flush();
+
+        if (++removedSinceCompact >= COMPACT_INTERVAL) {
+            writer.close();
+            try {
+                compact();
+            } finally {
+                writer = open();
+            }
+        }
+    }
+
+    /**
+     * Close the journal
+     *
+     * @throws IOException If the journal cannot be closed
+     */
+    synchronized void close() throws IOException {
+        writer.close();
+    }
+}
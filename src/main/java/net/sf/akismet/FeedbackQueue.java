@@ -0,0 +1,487 @@
+/**
+ * Copyright (c) 2005-2007, David A. Czarnecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the "David A. Czarnecki" nor the names of
+ * its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * Products derived from this software may not be called "Akismet Java API",
+ * nor may "Akismet Java API" appear in their name, without prior written permission of
+ * David A. Czarnecki.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sf.akismet;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background queue for submit-spam and submit-ham feedback.
+ * <p></p>
+ * Feedback is accepted immediately and delivered by a fixed number of worker threads, so marking a batch of
+ * comments does not cost one Akismet round trip per comment on the caller's thread. Identical feedback that
+ * is still waiting to be delivered is only sent once. If a journal file is given, queued feedback is appended
+ * to it and replayed when a queue is next opened on the same file, so feedback survives a restart.
+ * <p></p>
+ * Feedback that gets no answer or a 5xx answer, including while the circuit breaker is open, is retried up to
+ * {@link #DELIVERY_ATTEMPTS} times with a randomized exponential backoff. Feedback still undelivered after that, or
+ * when the queue shuts down, stays in the journal and is retried when the journal is next replayed; without a
+ * journal it is dropped.
+ * <p></p>
+ * The workers share the given {@link Akismet} instance; use a pooled instance
+ * ({@link Akismet#Akismet(String, String, int, int)}) with at least as many connections per host as workers.
+ *
+ * @version $Id$
+ */
+public class FeedbackQueue {
+
+    private static final Log logger = LogFactory.getLog(FeedbackQueue.class);
+
+    public static final int DEFAULT_CAPACITY = 10000;
+    public static final int DEFAULT_WORKERS = 4;
+    public static final int DELIVERY_ATTEMPTS = 5;
+
+    private static final long DELIVERY_BASE_DELAY = 1000;
+    private static final long DELIVERY_MAX_DELAY = 30000;
+
+    private final Akismet akismet;
+    private final BlockingQueue<Feedback> queue;
+    private final ConcurrentMap<Feedback, Feedback> pending = new ConcurrentHashMap<Feedback, Feedback>();
+    private final FeedbackJournal journal;
+    private final RetryPolicy deliveryRetry = new RetryPolicy(DELIVERY_ATTEMPTS, DELIVERY_BASE_DELAY, DELIVERY_MAX_DELAY,
+            new RetryBudget(RetryPolicy.DEFAULT_BUDGET_RATIO, RetryPolicy.DEFAULT_BUDGET_RESERVE));
+    private final Thread[] workers;
+    private final Object flushLock = new Object();
+    private int outstanding;
+    private volatile boolean closed;
+
+    /**
+     * Construct a queue without a journal
+     *
+     * @param akismet  Akismet instance used to deliver feedback
+     * @param capacity Maximum number of queued feedback submissions
+     * @param workers  Number of worker threads delivering feedback
+     */
+    public FeedbackQueue(Akismet akismet, int capacity, int workers) {
+        this(akismet, capacity, workers, null, false);
+    }
+
+    /**
+     * Construct a queue backed by an append-only journal. Feedback left in the journal by a previous queue is
+     * queued again.
+     *
+     * @param akismet  Akismet instance used to deliver feedback
+     * @param capacity Maximum number of queued feedback submissions
+     * @param workers  Number of worker threads delivering feedback
+     * @param journal  Journal file, created if it does not exist
+     * @throws IOException If the journal cannot be read or written
+     */
+    public FeedbackQueue(Akismet akismet, int capacity, int workers, File journal) throws IOException {
+        this(akismet, capacity, workers, new FeedbackJournal(journal), true);
+    }
+
+    private FeedbackQueue(Akismet akismet, int capacity, int workers, FeedbackJournal journal, boolean replay) {
+        if (akismet == null) {
+            throw new IllegalArgumentException("Akismet cannot be null");
+        }
+
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        }
+
+        if (workers < 1) {
+            throw new IllegalArgumentException("Workers must be at least 1");
+        }
+
+        this.akismet = akismet;
+        akismet.usePool();
+        this.queue = new ArrayBlockingQueue<Feedback>(capacity);
+        this.journal = journal;
+
+        if (replay) {
+            List<Feedback> replayed = journal.getPending();
+            for (int i = 0; i < replayed.size(); i++) {
+                Feedback feedback = replayed.get(i);
+                if (pending.putIfAbsent(feedback, feedback) == null) {
+                    if (queue.offer(feedback)) {
+                        outstanding++;
+                    } else {
+                        pending.remove(feedback);
+                    }
+                }
+            }
+
+            if (logger.isDebugEnabled()) {
+                logger.debug("Replayed " + outstanding + " feedback submissions from journal");
+            }
+        }
+
+        this.workers = new Thread[workers];
+        for (int i = 0; i < workers; i++) {
+            this.workers[i] = new Thread(new Worker(), "akismet-feedback-" + (i + 1));
+            this.workers[i].setDaemon(true);
+            this.workers[i].start();
+        }
+    }
+
+    /**
+     * Queue a submit-spam call. See {@link Akismet#submitSpam(String, String, String, String, String, String, String, String, String, java.util.Map)}
+     * for the parameters.
+     *
+     * @param ipAddress      IP address of the comment submitter
+     * @param userAgent      User agent information
+     * @param referrer       The content of the HTTP_REFERER header should be sent here
+     * @param permalink      The permanent location of the entry the comment was submitted to
+     * @param commentType    May be blank, comment, trackback, pingback, or a made up value like "registration"
+     * @param author         Submitted name with the comment
+     * @param authorEmail    Submitted email address
+     * @param authorURL      Commenter URL
+     * @param commentContent The content that was submitted
+     * @param other          Additional key/value information about the request
+     * @return <code>true</code> if the feedback was queued or is already queued, <code>false</code> if the queue is full or shut down
+     */
+    public boolean submitSpam(String ipAddress, String userAgent, String referrer, String permalink, String commentType,
+                              String author, String authorEmail, String authorURL, String commentContent, Map other) {
+        return submitSpam(CommentRequest.of(ipAddress, userAgent, referrer, permalink, commentType, author, authorEmail,
+                authorURL, commentContent, other));
+    }
+
+    /**
+     * Queue a submit-spam call
+     *
+     * @param request Comment
+     * @return <code>true</code> if the feedback was queued or is already queued, <code>false</code> if the queue is full or shut down
+     */
+    public boolean submitSpam(CommentRequest request) {
+        return enqueue(new Feedback(Akismet.FUNCTION_SUBMIT_SPAM, request));
+    }
+
+    /**
+     * Queue a submit-ham call. See {@link Akismet#submitHam(String, String, String, String, String, String, String, String, String, java.util.Map)}
+     * for the parameters.
+     *
+     * @param ipAddress      IP address of the comment submitter
+     * @param userAgent      User agent information
+     * @param referrer       The content of the HTTP_REFERER header should be sent here
+     * @param permalink      The permanent location of the entry the comment was submitted to
+     * @param commentType    May be blank, comment, trackback, pingback, or a made up value like "registration"
+     * @param author         Submitted name with the comment
+     * @param authorEmail    Submitted email address
+     * @param authorURL      Commenter URL
+     * @param commentContent The content that was submitted
+     * @param other          Additional key/value information about the request
+     * @return <code>true</code> if the feedback was queued or is already queued, <code>false</code> if the queue is full or shut down
+     */
+    public boolean submitHam(String ipAddress, String userAgent, String referrer, String permalink, String commentType,
+                             String author, String authorEmail, String authorURL, String commentContent, Map other) {
+        return submitHam(CommentRequest.of(ipAddress, userAgent, referrer, permalink, commentType, author, authorEmail,
+                authorURL, commentContent, other));
+    }
+
+    /**
+     * Queue a submit-ham call
+     *
+     * @param request Comment
+     * @return <code>true</code> if the feedback was queued or is already queued, <code>false</code> if the queue is full or shut down
+     */
+    public boolean submitHam(CommentRequest request) {
+        return enqueue(new Feedback(Akismet.FUNCTION_SUBMIT_HAM, request));
+    }
+
+    /**
+     * Queue feedback unless identical feedback is already pending
+     *
+     * @param feedback Feedback
+     * @return <code>true</code> if the feedback was queued or is already queued, <code>false</code> otherwise
+     */
+    private boolean enqueue(Feedback feedback) {
+        if (closed) {
+            return false;
+        }
+
+        if (pending.putIfAbsent(feedback, feedback) != null) {
+            return true;
+        }
+
+        synchronized (flushLock) {
+            outstanding++;
+        }
+
+        if (journal != null) {
+            try {
+                journal.append(feedback);
+            } catch (IOException e) {
+                if (logger.isErrorEnabled()) {
+                    logger.error(e);
+                }
+            }
+        }
+
+        if (!queue.offer(feedback)) {
+            if (journal != null) {
+                try {
+                    journal.remove(feedback);
+                } catch (IOException e) {
+                    if (logger.isErrorEnabled()) {
+                        logger.error(e);
+                    }
+                }
+            }
+
+            pending.remove(feedback);
+            completed();
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Deliver a single feedback submission, retrying while Akismet does not answer or answers with a 5xx status
+     *
+     * @param feedback Feedback
+     */
+    private void deliver(Feedback feedback) {
+        try {
+            int attempt = 1;
+            while (true) {
+                AkismetResult result = akismet.akismetRequest(feedback.function, feedback.request, TokenBucket.Priority.BACKGROUND,
+                        Long.MAX_VALUE);
+
+                int status = result.getHttpStatus();
+                if (status != 0 && status < 500) {
+                    if (journal != null) {
+                        journal.remove(feedback);
+                    }
+                    return;
+                }
+
+                // Undelivered feedback stays in the journal and is retried when the journal is replayed
+                if (attempt >= DELIVERY_ATTEMPTS || closed) {
+                    if (logger.isWarnEnabled()) {
+                        logger.warn("Giving up on Akismet " + feedback.function + " after " + attempt + " attempts: " + result);
+                    }
+                    return;
+                }
+
+                try {
+                    Thread.sleep(deliveryRetry.getDelay(attempt));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                attempt++;
+            }
+        } catch (Exception e) {
+            if (logger.isErrorEnabled()) {
+                logger.error(e);
+            }
+        } finally {
+            pending.remove(feedback);
+            completed();
+        }
+    }
+
+    private void completed() {
+        synchronized (flushLock) {
+            outstanding--;
+            if (outstanding == 0) {
+                flushLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Wait until all queued feedback has been delivered
+     *
+     * @param timeout Maximum time to wait in milliseconds
+     * @return <code>true</code> if the queue is empty, <code>false</code> if the timeout elapsed first
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public boolean flush(long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        synchronized (flushLock) {
+            while (outstanding > 0) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+
+                flushLock.wait(remaining);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Stop accepting feedback, wait for queued feedback to be delivered and stop the worker threads. Feedback
+     * still queued when the timeout elapses remains in the journal, if there is one.
+     *
+     * @param timeout Maximum time to wait in milliseconds for queued feedback to be delivered
+     * @return <code>true</code> if all queued feedback was delivered, <code>false</code> otherwise
+     */
+    public boolean shutdown(long timeout) {
+        closed = true;
+
+        boolean flushed;
+        try {
+            flushed = flush(timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            flushed = false;
+        }
+
+        for (int i = 0; i < workers.length; i++) {
+            workers[i].interrupt();
+        }
+
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                if (logger.isErrorEnabled()) {
+                    logger.error(e);
+                }
+            }
+        }
+
+        return flushed;
+    }
+
+    /**
+     * Register a JVM shutdown hook that calls {@link #shutdown(long)}
+     *
+     * @param timeout Maximum time to wait in milliseconds for queued feedback to be delivered
+     */
+    public void addShutdownHook(final long timeout) {
+        Runtime.getRuntime().addShutdownHook(new Thread("akismet-feedback-shutdown") {
+            public void run() {
+                FeedbackQueue.this.shutdown(timeout);
+            }
+        });
+    }
+
+    /**
+     * Return the number of feedback submissions queued or being delivered
+     *
+     * @return Number of pending feedback submissions
+     */
+    public int getPending() {
+        synchronized (flushLock) {
+            return outstanding;
+        }
+    }
+
+    /**
+     * Return the number of feedback submissions waiting in the queue
+     *
+     * @return Queue size
+     */
+    public int size() {
+        return queue.size();
+    }
+
+    private class Worker implements Runnable {
+
+        public void run() {
+            while (!closed || !queue.isEmpty()) {
+                Feedback feedback;
+                try {
+                    feedback = queue.poll(1, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                if (feedback != null) {
+                    deliver(feedback);
+                }
+            }
+        }
+    }
+
+    /**
+     * A single feedback submission. Two submissions are equal when they call the same function for the same
+     * comment.
+     */
+    static class Feedback {
+
+        final String function;
+        final CommentRequest request;
+        final String encoded;
+        long journalId;
+
+        Feedback(String function, CommentRequest request) {
+            this.function = function;
+            this.request = request;
+
+            byte[] body = request.body();
+            char[] chars = new char[function.length() + 1 + body.length];
+            function.getChars(0, function.length(), chars, 0);
+            chars[function.length()] = '&';
+            for (int i = 0; i < body.length; i++) {
+                chars[function.length() + 1 + i] = (char) body[i];
+            }
+
+            this.encoded = new String(chars);
+        }
+
+        /**
+         * Decode feedback from its {@link #encoded} form, the function followed by the encoded form body
+         *
+         * @param encoded Encoded feedback
+         * @return Feedback
+         */
+        static Feedback decode(String encoded) {
+            int separator = encoded.indexOf('&');
+            if (separator < 0) {
+                return new Feedback(encoded, new CommentRequest.Builder().build());
+            }
+
+            return new Feedback(encoded.substring(0, separator), CommentRequest.parse(encoded.substring(separator + 1)));
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Feedback)) {
+                return false;
+            }
+
+            Feedback that = (Feedback) o;
+            return function.equals(that.function) && request.equals(that.request);
+        }
+
+        public int hashCode() {
+            return 31 * function.hashCode() + request.hashCode();
+        }
+    }
+}
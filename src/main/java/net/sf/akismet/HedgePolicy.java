@@ -0,0 +1,201 @@
+/**
+ * Copyright (c) 2005-2007, David A. Czarnecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the "David A. Czarnecki" nor the names of
+ * its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * Products derived from this software may not be called "Akismet Java API",
+ * nor may "Akismet Java API" appear in their name, without prior written permission of
+ * David A. Czarnecki.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sf.akismet;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hedging policy for comment-check. When a call has not been answered within the hedge delay, a second identical
+ * request is sent and whichever answers first is used. The delay follows a percentile of recent comment-check
+ * latencies, the 95th by default, so only the slowest calls are hedged. Hedges are limited by a
+ * {@link RetryBudget}.
+ * <p></p>
+ * The first request runs on the calling thread. The hedge is only sent once the delay has passed, on the
+ * {@link Akismet#getAsyncExecutor() asynchronous executor}, and counts towards its limit of calls in flight; when
+ * no slot is free, the call waits for the first request alone. The executor must not be a fixed size pool when
+ * asynchronous calls are hedged too. When the hedge answers first, the first request is aborted by interrupting
+ * the calling thread, and with a {@link CommonsHttpTransport} by aborting its connection. The aborted request is
+ * {@link AkismetResult#isCancelled() cancelled}, so the circuit breaker and the metrics do not count it as a
+ * failure. The slower hedge is not aborted.
+ *
+ * @version $Id$
+ */
+public class HedgePolicy {
+
+    public static final double DEFAULT_PERCENTILE = 95;
+    public static final long DEFAULT_MIN_DELAY = 20;
+    public static final long DEFAULT_MAX_DELAY = 2000;
+    public static final long DEFAULT_INITIAL_DELAY = 500;
+    public static final double DEFAULT_BUDGET_RATIO = 0.05;
+    public static final int DEFAULT_BUDGET_RESERVE = 10;
+
+    static final int MIN_SAMPLES = 100;
+    static final long UPDATE_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    private final double percentile;
+    private final long minDelay;
+    private final long maxDelay;
+    private final RetryBudget budget;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private volatile long delay;
+    private volatile long updated = System.nanoTime();
+
+    /**
+     * Construct a policy with the default settings: hedge at the 95th percentile, between 20 milliseconds and
+     * 2 seconds, for at most 5% of the calls
+     */
+    public HedgePolicy() {
+        this(DEFAULT_PERCENTILE, DEFAULT_MIN_DELAY, DEFAULT_MAX_DELAY, new RetryBudget(DEFAULT_BUDGET_RATIO, DEFAULT_BUDGET_RESERVE));
+    }
+
+    /**
+     * Construct a policy
+     *
+     * @param percentile Percentile of recent latencies used as the hedge delay
+     * @param minDelay   Shortest hedge delay in milliseconds
+     * @param maxDelay   Longest hedge delay in milliseconds
+     * @param budget     Budget limiting the hedges
+     */
+    public HedgePolicy(double percentile, long minDelay, long maxDelay, RetryBudget budget) {
+        if (percentile <= 0 || percentile >= 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100");
+        }
+        if (minDelay < 0 || maxDelay < minDelay) {
+            throw new IllegalArgumentException("Delays must satisfy 0 <= min delay <= max delay");
+        }
+        if (budget == null) {
+            throw new IllegalArgumentException("Budget cannot be null");
+        }
+
+        this.percentile = percentile;
+        this.minDelay = minDelay;
+        this.maxDelay = maxDelay;
+        this.budget = budget;
+        this.delay = Math.max(minDelay, Math.min(maxDelay, DEFAULT_INITIAL_DELAY));
+    }
+
+    /**
+     * Return the current hedge delay. Until enough calls have been recorded, the delay is 500 milliseconds
+     * within the configured bounds.
+     *
+     * @return Delay in milliseconds
+     */
+    public long getDelay() {
+        long now = System.nanoTime();
+        if (now - updated >= UPDATE_INTERVAL) {
+            update(now);
+        }
+
+        return delay;
+    }
+
+    /**
+     * Record the latency of an answered request
+     *
+     * @param latency Latency in nanoseconds
+     */
+    void record(long latency) {
+        latencies.record(latency);
+    }
+
+    /**
+     * Record a call, adding to the budget
+     */
+    void onCall() {
+        budget.deposit();
+    }
+
+    /**
+     * Take the budget for a hedge
+     *
+     * @return <code>true</code> if a hedge may be sent, <code>false</code> if the budget is spent
+     */
+    boolean tryHedge() {
+        return budget.withdraw();
+    }
+
+    /**
+     * Return the budget limiting the hedges
+     *
+     * @return Hedge budget
+     */
+    public RetryBudget getBudget() {
+        return budget;
+    }
+
+    /**
+     * Run a task after a delay on the timer shared by all policies
+     *
+     * @param task  Task
+     * @param delay Delay in milliseconds
+     * @return Future for cancelling the task
+     */
+    static ScheduledFuture<?> schedule(Runnable task, long delay) {
+        return Timer.TIMER.schedule(task, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Holder of the timer, created on first use
+     */
+    private static class Timer {
+
+        static final ScheduledThreadPoolExecutor TIMER = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "akismet-hedge-timer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        static {
+            TIMER.setRemoveOnCancelPolicy(true);
+        }
+    }
+
+    private synchronized void update(long now) {
+        if (now - updated < UPDATE_INTERVAL) {
+            return;
+        }
+
+        updated = now;
+        if (latencies.getCount() >= MIN_SAMPLES) {
+            long percentileDelay = TimeUnit.NANOSECONDS.toMillis(latencies.getPercentile(percentile));
+            delay = Math.max(minDelay, Math.min(maxDelay, percentileDelay));
+            // Start a new window so the delay follows recent latencies
+            latencies.reset();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * Copyright (c) 2005-2007, David A. Czarnecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the "David A. Czarnecki" nor the names of
+ * its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * Products derived from this software may not be called "Akismet Java API",
+ * nor may "Akismet Java API" appear in their name, without prior written permission of
+ * David A. Czarnecki.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sf.akismet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Pre-filter on the IP address of the comment submitter. Addresses in a blocked range are spam, addresses in
+ * an allowed range are ham, and the most specific range wins when ranges overlap.
+ * <p></p>
+ * The ranges can be reloaded at any time. A new trie is built and then swapped in, so lookups never wait.
+ *
+ * @version $Id$
+ */
+public class IpFilter implements PreFilter {
+
+    private volatile IpTrie trie = new IpTrie();
+
+    /**
+     * Construct a filter without any ranges
+     */
+    public IpFilter() {
+    }
+
+    /**
+     * Construct a filter with the ranges from the given files
+     *
+     * @param blocklist File of blocked ranges, one per line, may be <code>null</code>
+     * @param allowlist File of allowed ranges, one per line, may be <code>null</code>
+     * @throws IOException If either file cannot be read
+     */
+    public IpFilter(File blocklist, File allowlist) throws IOException {
+        load(blocklist, allowlist);
+    }
+
+    /**
+     * Replace the ranges with the ranges from the given files
+     *
+     * @param blocklist File of blocked ranges, one per line, may be <code>null</code>
+     * @param allowlist File of allowed ranges, one per line, may be <code>null</code>
+     * @throws IOException              If either file cannot be read
+     * @throws IllegalArgumentException If a range cannot be parsed
+     */
+    public void load(File blocklist, File allowlist) throws IOException {
+        IpTrie loaded = new IpTrie();
+        if (blocklist != null) {
+            add(loaded, RuleFileReader.readRules(blocklist), Verdict.SPAM);
+        }
+
+        if (allowlist != null) {
+            add(loaded, RuleFileReader.readRules(allowlist), Verdict.HAM);
+        }
+
+        trie = loaded;
+    }
+
+    private static void add(IpTrie trie, List<String> ranges, Verdict verdict) {
+        for (int i = 0; i < ranges.size(); i++) {
+            trie.add(ranges.get(i), verdict);
+        }
+    }
+
+    /**
+     * Replace the ranges with a trie built by the caller. The trie must not be modified afterwards.
+     *
+     * @param trie Trie of ranges
+     */
+    public void setTrie(IpTrie trie) {
+        if (trie == null) {
+            throw new IllegalArgumentException("Trie cannot be null");
+        }
+
+        this.trie = trie;
+    }
+
+    public Verdict filter(CommentRequest request) {
+        return trie.lookup(request.getIpAddress());
+    }
+}
@@ -0,0 +1,319 @@
+/**
+ * Copyright (c) 2005-2007, David A. Czarnecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the "David A. Czarnecki" nor the names of
+ * its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * Products derived from this software may not be called "Akismet Java API",
+ * nor may "Akismet Java API" appear in their name, without prior written permission of
+ * David A. Czarnecki.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sf.akismet;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Binary trie of IPv4 and IPv6 address ranges in CIDR notation, each marked as blocked ({@link Verdict#SPAM})
+ * or allowed ({@link Verdict#HAM}). A lookup returns the mark of the most specific range containing the address.
+ * <p></p>
+ * Nodes are stored in primitive arrays, two child indexes and one mark per node. A trie is not thread-safe
+ * while ranges are being added; build it completely before sharing it, as {@link IpFilter} does.
+ *
+ * @version $Id$
+ */
+public class IpTrie {
+
+    private static final byte MARK_NONE = 0;
+    private static final byte MARK_SPAM = 1;
+    private static final byte MARK_HAM = 2;
+
+    private static final int IPV4_ROOT = 0;
+    private static final int IPV6_ROOT = 1;
+
+    private int[] children = new int[128];
+    private byte[] marks = new byte[64];
+    private int nodes = 2;
+    private int ranges;
+
+    /**
+     * Add a range
+     *
+     * @param cidr    Address range such as <code>192.168.0.0/16</code>, <code>2001:db8::/32</code>, or a single address
+     * @param verdict {@link Verdict#SPAM} to block the range or {@link Verdict#HAM} to allow it
+     * @throws IllegalArgumentException If the range cannot be parsed or the verdict is not SPAM or HAM
+     */
+    public void add(String cidr, Verdict verdict) {
+        byte mark;
+        if (verdict == Verdict.SPAM) {
+            mark = MARK_SPAM;
+        } else if (verdict == Verdict.HAM) {
+            mark = MARK_HAM;
+        } else {
+            throw new IllegalArgumentException("Verdict must be SPAM or HAM");
+        }
+
+        String address = cidr.trim();
+        int prefixLength = -1;
+        int slash = address.indexOf('/');
+        if (slash >= 0) {
+            try {
+                prefixLength = Integer.parseInt(address.substring(slash + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid prefix length: " + cidr);
+            }
+
+            address = address.substring(0, slash);
+        }
+
+        long ipv4 = parseIPv4(address);
+        byte[] ipv6 = null;
+        if (ipv4 < 0) {
+            ipv6 = parseIPv6(address);
+            if (ipv6 == null) {
+                throw new IllegalArgumentException("Invalid address range: " + cidr);
+            }
+        }
+
+        if (ipv4 >= 0) {
+            if (prefixLength == -1) {
+                prefixLength = 32;
+            }
+
+            if (prefixLength < 0 || prefixLength > 32) {
+                throw new IllegalArgumentException("Invalid prefix length: " + cidr);
+            }
+
+            int node = IPV4_ROOT;
+            for (int i = 0; i < prefixLength; i++) {
+                node = child(node, (int) (ipv4 >>> (31 - i)) & 1);
+            }
+
+            marks[node] = mark;
+            ranges++;
+            return;
+        }
+
+        if (prefixLength == -1) {
+            prefixLength = 128;
+        }
+
+        if (prefixLength < 0 || prefixLength > 128) {
+            throw new IllegalArgumentException("Invalid prefix length: " + cidr);
+        }
+
+        int node = IPV6_ROOT;
+        for (int i = 0; i < prefixLength; i++) {
+            node = child(node, (ipv6[i >>> 3] >>> (7 - (i & 7))) & 1);
+        }
+
+        marks[node] = mark;
+        ranges++;
+    }
+
+    /**
+     * Look up an address
+     *
+     * @param address IPv4 or IPv6 address
+     * @return Verdict of the most specific range containing the address, or {@link Verdict#UNKNOWN} if there is
+     *         none or the address cannot be parsed
+     */
+    public Verdict lookup(String address) {
+        if (address == null || address.length() == 0) {
+            return Verdict.UNKNOWN;
+        }
+
+        byte mark = MARK_NONE;
+        long ipv4 = parseIPv4(address);
+        byte[] ipv6 = null;
+        if (ipv4 < 0) {
+            ipv6 = parseIPv6(address);
+            if (ipv6 == null) {
+                return Verdict.UNKNOWN;
+            }
+
+            // Match IPv4-mapped addresses against the IPv4 ranges
+            ipv4 = mappedIPv4(ipv6);
+        }
+
+        if (ipv4 >= 0) {
+            int node = IPV4_ROOT;
+            mark = marks[node];
+            for (int i = 0; i < 32; i++) {
+                node = children[(node << 1) | ((int) (ipv4 >>> (31 - i)) & 1)];
+                if (node == 0) {
+                    break;
+                }
+
+                if (marks[node] != MARK_NONE) {
+                    mark = marks[node];
+                }
+            }
+        } else {
+            int node = IPV6_ROOT;
+            mark = marks[node];
+            for (int i = 0; i < 128; i++) {
+                node = children[(node << 1) | ((ipv6[i >>> 3] >>> (7 - (i & 7))) & 1)];
+                if (node == 0) {
+                    break;
+                }
+
+                if (marks[node] != MARK_NONE) {
+                    mark = marks[node];
+                }
+            }
+        }
+
+        if (mark == MARK_SPAM) {
+            return Verdict.SPAM;
+        }
+
+        if (mark == MARK_HAM) {
+            return Verdict.HAM;
+        }
+
+        return Verdict.UNKNOWN;
+    }
+
+    /**
+     * Return the number of ranges added
+     *
+     * @return Number of ranges
+     */
+    public int size() {
+        return ranges;
+    }
+
+    /**
+     * Return the child of a node, creating it if necessary
+     */
+    private int child(int node, int bit) {
+        int index = (node << 1) | bit;
+        if (children[index] == 0) {
+            if (nodes == marks.length) {
+                int[] grownChildren = new int[children.length * 2];
+                System.arraycopy(children, 0, grownChildren, 0, children.length);
+                children = grownChildren;
+
+                byte[] grownMarks = new byte[marks.length * 2];
+                System.arraycopy(marks, 0, grownMarks, 0, marks.length);
+                marks = grownMarks;
+            }
+
+            children[index] = nodes++;
+        }
+
+        return children[index];
+    }
+
+    /**
+     * Parse a dotted quad IPv4 address
+     *
+     * @param address Address
+     * @return Address as an unsigned 32-bit value, or <code>-1</code> if the address is not a valid IPv4 address
+     */
+    static long parseIPv4(String address) {
+        long result = 0;
+        int octet = -1;
+        int octets = 0;
+        for (int i = 0; i < address.length(); i++) {
+            char c = address.charAt(i);
+            if (c >= '0' && c <= '9') {
+                octet = (octet == -1) ? c - '0' : octet * 10 + (c - '0');
+                if (octet > 255) {
+                    return -1;
+                }
+            } else if (c == '.' && octet != -1 && octets < 3) {
+                result = (result << 8) | octet;
+                octet = -1;
+                octets++;
+            } else {
+                return -1;
+            }
+        }
+
+        if (octet == -1 || octets != 3) {
+            return -1;
+        }
+
+        return (result << 8) | octet;
+    }
+
+    /**
+     * Return the IPv4 address of an IPv4-mapped IPv6 address
+     *
+     * @param ipv6 16 address bytes
+     * @return Address as an unsigned 32-bit value, or <code>-1</code> if the address is not IPv4-mapped
+     */
+    private static long mappedIPv4(byte[] ipv6) {
+        for (int i = 0; i < 10; i++) {
+            if (ipv6[i] != 0) {
+                return -1;
+            }
+        }
+
+        if (ipv6[10] != (byte) 0xff || ipv6[11] != (byte) 0xff) {
+            return -1;
+        }
+
+        return ((ipv6[12] & 0xffL) << 24) | ((ipv6[13] & 0xffL) << 16) | ((ipv6[14] & 0xffL) << 8) | (ipv6[15] & 0xffL);
+    }
+
+    /**
+     * Parse an IPv6 address. Only literal addresses are accepted, so this never causes a DNS lookup.
+     *
+     * @param address Address
+     * @return 16 address bytes, or <code>null</code> if the address is not a valid IPv6 address
+     */
+    static byte[] parseIPv6(String address) {
+        if (address.indexOf(':') < 0) {
+            return null;
+        }
+
+        for (int i = 0; i < address.length(); i++) {
+            char c = address.charAt(i);
+            boolean valid = (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F') || c == ':' || c == '.';
+            if (!valid) {
+                return null;
+            }
+        }
+
+        try {
+            byte[] bytes = InetAddress.getByName(address).getAddress();
+            if (bytes.length == 16) {
+                return bytes;
+            }
+
+            // IPv4-mapped addresses are returned as IPv4 addresses
+            byte[] mapped = new byte[16];
+            mapped[10] = (byte) 0xff;
+            mapped[11] = (byte) 0xff;
+            System.arraycopy(bytes, 0, mapped, 12, 4);
+            return mapped;
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+}
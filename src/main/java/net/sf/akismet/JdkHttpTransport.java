@@ -0,0 +1,281 @@
+/**
+ * Copyright (c) 2005-2007, David A. Czarnecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the "David A. Czarnecki" nor the names of
+ * its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * Products derived from this software may not be called "Akismet Java API",
+ * nor may "Akismet Java API" appear in their name, without prior written permission of
+ * David A. Czarnecki.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sf.akismet;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.Authenticator;
+import java.net.InetSocketAddress;
+import java.net.PasswordAuthentication;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Transport using the <code>java.net.http</code> client of the JDK. Requests prefer HTTP/2, so concurrent calls
+ * are multiplexed over one connection per Akismet host instead of taking a pooled connection each, and fall back
+ * to HTTP/1.1 when the server does not support HTTP/2. The encoded form is sent from the byte arrays of the
+ * request without copying. One transport can be shared between threads and between {@link Akismet} instances.
+ * <p></p>
+ * Servers generally offer HTTP/2 only over TLS, so to get it the <code>http://</code> Akismet URLs have to be
+ * called over <code>https://</code>, which is opted into with {@link #JdkHttpTransport(boolean)}. By default the
+ * URLs are used as given, as with {@link CommonsHttpTransport}. Note that the JDK disables Basic authentication
+ * with a proxy for HTTPS unless the <code>jdk.http.auth.tunneling.disabledSchemes</code> system property allows it.
+ * <p></p>
+ * Asynchronous calls of an {@link Akismet} instance using this transport are sent with {@link #postAsync}, so they
+ * do not hold a thread of the {@link AkismetExecutor} while waiting for Akismet.
+ * <p></p>
+ * <pre>
+ * AkismetTransport transport = new JdkHttpTransport(true);
+ * Akismet akismet = new Akismet("Your API key", "http://your.blog.com/", transport);
+ * </pre>
+ *
+ * @version $Id$
+ */
+public class JdkHttpTransport implements AkismetTransport {
+
+    private static final String USER_AGENT_HEADER = "User-Agent";
+    private static final String CONTENT_TYPE_HEADER = "Content-Type";
+
+    private final boolean https;
+    private final Function<HttpResponse<String>, Response> toResponse = new Function<HttpResponse<String>, Response>() {
+        public Response apply(HttpResponse<String> response) {
+            return new Response(response.statusCode(), response.body(), readHeaders(response.headers()));
+        }
+    };
+    private volatile HttpClient httpClient;
+    private volatile int socketTimeout = Akismet.DEFAULT_SOCKET_TIMEOUT;
+    private int connectionTimeout = Akismet.DEFAULT_CONNECTION_TIMEOUT;
+    private String proxyHost;
+    private int proxyPort;
+    private String proxyUsername;
+    private String proxyPassword;
+
+    /**
+     * Construct a transport that calls the URLs as given
+     */
+    public JdkHttpTransport() {
+        this(false);
+    }
+
+    /**
+     * Construct a transport
+     *
+     * @param https <code>true</code> to call Akismet over HTTPS, which HTTP/2 requires, <code>false</code> to use
+     *              the URLs as given
+     */
+    public JdkHttpTransport(boolean https) {
+        this.https = https;
+    }
+
+    public Response post(String url, byte[] prefix, byte[] body) throws IOException {
+        try {
+            return toResponse.apply(getHttpClient().send(request(url, prefix, body), HttpResponse.BodyHandlers.ofString()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException exception = new InterruptedIOException("Interrupted while waiting for Akismet");
+            exception.initCause(e);
+            throw exception;
+        }
+    }
+
+    /**
+     * Post an encoded form without blocking. The future completes on a thread of the JDK client, exceptionally
+     * with an {@link IOException} if no response was received.
+     *
+     * @param url    URL to post to
+     * @param prefix Encoded parameters sent first
+     * @param body   Encoded parameters sent after the prefix
+     * @return Future for the response, whatever its status
+     */
+    public CompletableFuture<Response> postAsync(String url, byte[] prefix, byte[] body) {
+        return getHttpClient().sendAsync(request(url, prefix, body), HttpResponse.BodyHandlers.ofString()).thenApply(toResponse);
+    }
+
+    /**
+     * Build the request for a post
+     *
+     * @param url    URL to post to
+     * @param prefix Encoded parameters sent first
+     * @param body   Encoded parameters sent after the prefix
+     * @return Request
+     */
+    private HttpRequest request(String url, byte[] prefix, byte[] body) {
+        if (https && url.startsWith("http://")) {
+            url = "https://" + url.substring(7);
+        }
+
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                .header(USER_AGENT_HEADER, Akismet.USER_AGENT_VALUE)
+                .header(CONTENT_TYPE_HEADER, FormRequestEntity.CONTENT_TYPE)
+                .POST(HttpRequest.BodyPublishers.ofByteArrays(Arrays.asList(prefix, body)));
+
+        int timeout = socketTimeout;
+        if (timeout > 0) {
+            builder.timeout(Duration.ofMillis(timeout));
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Read the Akismet response headers of a call
+     *
+     * @param responseHeaders Response headers
+     * @return Header values by name, or <code>null</code> if none of the headers were sent
+     */
+    private static Map<String, String> readHeaders(HttpHeaders responseHeaders) {
+        Map<String, String> headers = null;
+        for (int i = 0; i < AkismetResult.HEADERS.length; i++) {
+            Optional<String> header = responseHeaders.firstValue(AkismetResult.HEADERS[i]);
+            if (header.isPresent()) {
+                if (headers == null) {
+                    headers = new HashMap<String, String>(4);
+                }
+                headers.put(AkismetResult.HEADERS[i], header.get());
+            }
+        }
+
+        return headers;
+    }
+
+    /**
+     * Return the client, building it with the current settings if necessary
+     *
+     * @return HTTP client
+     */
+    private HttpClient getHttpClient() {
+        HttpClient client = httpClient;
+        if (client == null) {
+            synchronized (this) {
+                client = httpClient;
+                if (client == null) {
+                    client = buildHttpClient();
+                    httpClient = client;
+                }
+            }
+        }
+
+        return client;
+    }
+
+    /**
+     * Build a client with the current settings
+     *
+     * @return HTTP client
+     */
+    private synchronized HttpClient buildHttpClient() {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NEVER);
+
+        if (connectionTimeout > 0) {
+            builder.connectTimeout(Duration.ofMillis(connectionTimeout));
+        }
+
+        if (proxyHost != null) {
+            builder.proxy(ProxySelector.of(new InetSocketAddress(proxyHost, proxyPort)));
+        }
+
+        if (proxyUsername != null) {
+            final PasswordAuthentication credentials = new PasswordAuthentication(proxyUsername,
+                    proxyPassword == null ? new char[0] : proxyPassword.toCharArray());
+            builder.authenticator(new Authenticator() {
+                protected PasswordAuthentication getPasswordAuthentication() {
+                    return getRequestorType() == RequestorType.PROXY ? credentials : null;
+                }
+            });
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Sets the proxy used for all requests. Connections already open are left to close on their own.
+     *
+     * @param proxyHost Proxy host
+     * @param proxyPort Proxy port
+     */
+    public synchronized void setProxy(String proxyHost, int proxyPort) {
+        this.proxyHost = proxyHost;
+        this.proxyPort = proxyPort;
+        httpClient = null;
+    }
+
+    public synchronized void setProxyCredentials(String proxyUsername, String proxyPassword) {
+        this.proxyUsername = proxyUsername;
+        this.proxyPassword = proxyPassword;
+        httpClient = null;
+    }
+
+    /**
+     * Sets the connect and read timeouts. The read timeout bounds the time until the response headers are
+     * received. A timeout of <code>0</code> means wait indefinitely.
+     *
+     * @param connectionTimeout Time in milliseconds to wait for a connection to be established
+     * @param socketTimeout     Time in milliseconds to wait for the response
+     */
+    public synchronized void setTimeouts(int connectionTimeout, int socketTimeout) {
+        this.socketTimeout = socketTimeout;
+        if (this.connectionTimeout != connectionTimeout) {
+            this.connectionTimeout = connectionTimeout;
+            httpClient = null;
+        }
+    }
+
+    /**
+     * Close the client, waiting for calls in progress, on JDKs where the client can be closed. Otherwise the
+     * client is dropped and the JDK closes its connections and threads once it is no longer referenced.
+     */
+    public synchronized void shutdown() {
+        HttpClient client = httpClient;
+        httpClient = null;
+        if (client instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) client).close();
+            } catch (Exception e) {
+                // Closing is best effort
+            }
+        }
+    }
+}
@@ -0,0 +1,300 @@
+/**
+ * Copyright (c) 2005-2007, David A. Czarnecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the "David A. Czarnecki" nor the names of
+ * its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * Products derived from this software may not be called "Akismet Java API",
+ * nor may "Akismet Java API" appear in their name, without prior written permission of
+ * David A. Czarnecki.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sf.akismet;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Caches the result of verify-key calls per API key and blog.
+ * <p></p>
+ * A result is reused until its time to live expires. Concurrent callers that find no usable result share a
+ * single verify-key call rather than each making their own. When a result is used within the refresh window
+ * before it expires, a background refresh is started and the current result is returned without waiting.
+ * If a verify-key call fails, the previous result, if any, is returned, and for the failure time to live no new
+ * call is made for that key and blog, so an outage does not send every caller to Akismet. Entries that have
+ * expired and are not in use are removed once per time to live.
+ *
+ * @version $Id$
+ */
+public class KeyVerificationCache {
+
+    private static final Log logger = LogFactory.getLog(KeyVerificationCache.class);
+
+    public static final long DEFAULT_TIME_TO_LIVE = 60 * 60 * 1000L;
+    public static final long DEFAULT_FAILURE_TIME_TO_LIVE = 30 * 1000L;
+
+    private final long timeToLive;
+    private final long refreshAhead;
+    private final long failureTimeToLive;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+    private final ThreadPoolExecutor refreshExecutor;
+    private final AtomicLong nextSweep;
+
+    /**
+     * Construct a cache with the default time to live, refreshing during the last tenth of it
+     */
+    public KeyVerificationCache() {
+        this(DEFAULT_TIME_TO_LIVE, DEFAULT_TIME_TO_LIVE / 10);
+    }
+
+    /**
+     * Construct a cache with the default failure time to live
+     *
+     * @param timeToLive   Time in milliseconds a verify-key result is used
+     * @param refreshAhead Time in milliseconds before expiry during which a use of the result starts a background refresh
+     * @throws IllegalArgumentException If the time to live is less than 1, or the refresh window is negative or not less than the time to live
+     */
+    public KeyVerificationCache(long timeToLive, long refreshAhead) {
+        this(timeToLive, refreshAhead, Math.min(DEFAULT_FAILURE_TIME_TO_LIVE, timeToLive));
+    }
+
+    /**
+     * Construct a cache
+     *
+     * @param timeToLive        Time in milliseconds a verify-key result is used
+     * @param refreshAhead      Time in milliseconds before expiry during which a use of the result starts a background refresh
+     * @param failureTimeToLive Time in milliseconds after a failed verify-key call during which no new call is made
+     * @throws IllegalArgumentException If the time to live is less than 1, the refresh window is negative or not less than the
+     *                                  time to live, or the failure time to live is negative
+     */
+    public KeyVerificationCache(long timeToLive, long refreshAhead, long failureTimeToLive) {
+        if (timeToLive < 1) {
+            throw new IllegalArgumentException("Time to live must be at least 1");
+        }
+
+        if (refreshAhead < 0 || refreshAhead >= timeToLive) {
+            throw new IllegalArgumentException("Refresh window must be at least 0 and less than the time to live");
+        }
+
+        if (failureTimeToLive < 0) {
+            throw new IllegalArgumentException("Failure time to live must be at least 0");
+        }
+
+        this.timeToLive = timeToLive;
+        this.refreshAhead = refreshAhead;
+        this.failureTimeToLive = failureTimeToLive;
+        this.nextSweep = new AtomicLong(System.currentTimeMillis() + timeToLive);
+
+        // A single daemon thread, started on demand and stopped when idle
+        refreshExecutor = new ThreadPoolExecutor(0, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "akismet-verify-key-refresh");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+
+    /**
+     * Return the verify-key result for an API key and blog, calling the verifier if there is no usable result
+     *
+     * @param apiKey   Akismet API key
+     * @param blog     Blog associated with the API key
+     * @param verifier Makes the verify-key call, returning <code>true</code> for a valid key and throwing an exception if the call failed
+     * @return <code>true</code> if the API key is valid, <code>false</code> otherwise
+     */
+    public boolean verify(String apiKey, String blog, Callable<Boolean> verifier) {
+        long now = System.currentTimeMillis();
+        long sweep = nextSweep.get();
+        if (now >= sweep && nextSweep.compareAndSet(sweep, now + timeToLive)) {
+            sweep(now);
+        }
+
+        Entry entry = getEntry(apiKey, blog);
+
+        Boolean value = entry.value;
+        boolean failing = now < entry.failedUntil;
+        if (value != null && now < entry.expires) {
+            if (now >= entry.expires - refreshAhead && !failing) {
+                FutureTask<Boolean> refresh = entry.newLoad(verifier);
+                if (refresh != null) {
+                    refreshExecutor.execute(refresh);
+                }
+            }
+
+            return value.booleanValue();
+        }
+
+        if (failing) {
+            // Akismet could not be reached a moment ago, answer with the previous result
+            return value != null && value.booleanValue();
+        }
+
+        FutureTask<Boolean> load = entry.newLoad(verifier);
+        if (load != null) {
+            load.run();
+        } else {
+            load = entry.load.get();
+            if (load == null) {
+                // Completed between the two checks
+                return entry.value != null && entry.value.booleanValue();
+            }
+        }
+
+        try {
+            return load.get().booleanValue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // Already logged by the load
+        }
+
+        return value != null && value.booleanValue();
+    }
+
+    /**
+     * Return the cached verify-key result without making a call
+     *
+     * @param apiKey Akismet API key
+     * @param blog   Blog associated with the API key
+     * @return Cached result, or <code>null</code> if there is no unexpired result
+     */
+    public Boolean getCached(String apiKey, String blog) {
+        Entry entry = entries.get(key(apiKey, blog));
+        if (entry == null || System.currentTimeMillis() >= entry.expires) {
+            return null;
+        }
+
+        return entry.value;
+    }
+
+    /**
+     * Remove the cached result for an API key and blog
+     *
+     * @param apiKey Akismet API key
+     * @param blog   Blog associated with the API key
+     */
+    public void invalidate(String apiKey, String blog) {
+        entries.remove(key(apiKey, blog));
+    }
+
+    /**
+     * Return the number of API key and blog combinations with a cached result
+     *
+     * @return Number of cached results
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Remove the entries that have expired and have no call in progress or recent failure
+     *
+     * @param now Current time in milliseconds
+     */
+    private void sweep(long now) {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Entry> mapping = iterator.next();
+            Entry entry = mapping.getValue();
+            if (now >= entry.expires && now >= entry.failedUntil && entry.load.get() == null) {
+                entries.remove(mapping.getKey(), entry);
+            }
+        }
+    }
+
+    private Entry getEntry(String apiKey, String blog) {
+        String key = key(apiKey, blog);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            Entry created = new Entry();
+            entry = entries.putIfAbsent(key, created);
+            if (entry == null) {
+                entry = created;
+            }
+        }
+
+        return entry;
+    }
+
+    private static String key(String apiKey, String blog) {
+        return apiKey + '\n' + blog;
+    }
+
+    private class Entry {
+
+        volatile Boolean value;
+        volatile long expires;
+        volatile long failedUntil;
+        final AtomicReference<FutureTask<Boolean>> load = new AtomicReference<FutureTask<Boolean>>();
+
+        /**
+         * Create a load of this entry, unless one is already in progress
+         *
+         * @param verifier Makes the verify-key call
+         * @return Load to run, or <code>null</code> if a load is already in progress
+         */
+        FutureTask<Boolean> newLoad(final Callable<Boolean> verifier) {
+            final AtomicReference<FutureTask<Boolean>> current = load;
+            FutureTask<Boolean> task = new FutureTask<Boolean>(new Callable<Boolean>() {
+                public Boolean call() throws Exception {
+                    try {
+                        Boolean result = verifier.call();
+                        value = result;
+                        expires = System.currentTimeMillis() + timeToLive;
+                        failedUntil = 0;
+                        return result;
+                    } catch (Exception e) {
+                        if (logger.isErrorEnabled()) {
+                            logger.error(e);
+                        }
+
+                        failedUntil = System.currentTimeMillis() + failureTimeToLive;
+
+                        throw e;
+                    } finally {
+                        current.set(null);
+                    }
+                }
+            });
+
+            return load.compareAndSet(null, task) ? task : null;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) 2005-2007, David A. Czarnecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the "David A. Czarnecki" nor the names of
+ * its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * Products derived from this software may not be called "Akismet Java API",
+ * nor may "Akismet Java API" appear in their name, without prior written permission of
+ * David A. Czarnecki.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sf.akismet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+/**
+ * Pre-filter that marks a comment as spam when its content and author URL together contain at least a
+ * threshold number of keyword occurrences. Keywords are matched case-insensitively anywhere in the text.
+ * <p></p>
+ * The keywords can be reloaded at any time. A new matcher is built and then swapped in, so matching never waits.
+ *
+ * @version $Id$
+ */
+public class KeywordFilter implements PreFilter {
+
+    public static final int DEFAULT_THRESHOLD = 1;
+
+    private volatile KeywordMatcher matcher = new KeywordMatcher(Collections.<String>emptyList());
+    private volatile int threshold = DEFAULT_THRESHOLD;
+
+    /**
+     * Construct a filter without any keywords
+     */
+    public KeywordFilter() {
+    }
+
+    /**
+     * Construct a filter with the keywords from the given file
+     *
+     * @param keywords File of keywords, one per line
+     * @throws IOException If the file cannot be read
+     */
+    public KeywordFilter(File keywords) throws IOException {
+        load(keywords);
+    }
+
+    /**
+     * Replace the keywords with the keywords from the given file
+     *
+     * @param keywords File of keywords, one per line
+     * @throws IOException If the file cannot be read
+     */
+    public void load(File keywords) throws IOException {
+        matcher = new KeywordMatcher(RuleFileReader.readRules(keywords));
+    }
+
+    /**
+     * Replace the keywords with a matcher built by the caller
+     *
+     * @param matcher Keyword matcher
+     */
+    public void setMatcher(KeywordMatcher matcher) {
+        if (matcher == null) {
+            throw new IllegalArgumentException("Matcher cannot be null");
+        }
+
+        this.matcher = matcher;
+    }
+
+    /**
+     * Sets the number of keyword occurrences from which a comment is spam
+     *
+     * @param threshold Number of occurrences, at least 1
+     */
+    public void setThreshold(int threshold) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("Threshold must be at least 1");
+        }
+
+        this.threshold = threshold;
+    }
+
+    public Verdict filter(CommentRequest request) {
+        KeywordMatcher current = matcher;
+        int limit = threshold;
+
+        int found = current.count(request.getCommentContent(), limit);
+        if (found < limit) {
+            found += current.count(request.getAuthorURL(), limit - found);
+        }
+
+        return (found >= limit) ? Verdict.SPAM : Verdict.UNKNOWN;
+    }
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright (c) 2005-2007, David A. Czarnecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the "David A. Czarnecki" nor the names of
+ * its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * Products derived from this software may not be called "Akismet Java API",
+ * nor may "Akismet Java API" appear in their name, without prior written permission of
+ * David A. Czarnecki.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sf.akismet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Case-insensitive Aho-Corasick matcher for a fixed set of keywords. Text is scanned once regardless of the
+ * number of keywords. The automaton is stored in primitive arrays, with each node's transitions sorted by
+ * character, and is immutable once constructed.
+ *
+ * @version $Id$
+ */
+public class KeywordMatcher {
+
+    private final int[] edgeStart;
+    private final char[] edgeChars;
+    private final int[] edgeTargets;
+    private final int[] fail;
+    private final int[] matches;
+    private final int keywords;
+
+    /**
+     * Construct a matcher
+     *
+     * @param keywords Keywords to match, blank and duplicate keywords are ignored
+     */
+    public KeywordMatcher(List<String> keywords) {
+        // Build the trie with maps, then flatten it
+        List<TreeMap<Character, Integer>> trie = new ArrayList<TreeMap<Character, Integer>>();
+        List<Integer> terminal = new ArrayList<Integer>();
+        trie.add(new TreeMap<Character, Integer>());
+        terminal.add(Integer.valueOf(0));
+
+        int added = 0;
+        for (int i = 0; i < keywords.size(); i++) {
+            String keyword = keywords.get(i);
+            if (keyword == null || keyword.trim().length() == 0) {
+                continue;
+            }
+
+            int node = 0;
+            for (int j = 0; j < keyword.length(); j++) {
+                Character c = Character.valueOf(Character.toLowerCase(keyword.charAt(j)));
+                Integer next = trie.get(node).get(c);
+                if (next == null) {
+                    next = Integer.valueOf(trie.size());
+                    trie.get(node).put(c, next);
+                    trie.add(new TreeMap<Character, Integer>());
+                    terminal.add(Integer.valueOf(0));
+                }
+
+                node = next.intValue();
+            }
+
+            // A keyword listed twice, in any case, is still one keyword
+            if (terminal.get(node).intValue() == 0) {
+                terminal.set(node, Integer.valueOf(1));
+                added++;
+            }
+        }
+
+        int nodes = trie.size();
+        int edges = nodes - 1;
+        this.keywords = added;
+        this.edgeStart = new int[nodes + 1];
+        this.edgeChars = new char[edges];
+        this.edgeTargets = new int[edges];
+        this.fail = new int[nodes];
+        this.matches = new int[nodes];
+
+        int edge = 0;
+        for (int node = 0; node < nodes; node++) {
+            edgeStart[node] = edge;
+            for (Map.Entry<Character, Integer> entry : trie.get(node).entrySet()) {
+                edgeChars[edge] = entry.getKey().charValue();
+                edgeTargets[edge] = entry.getValue().intValue();
+                edge++;
+            }
+            matches[node] = terminal.get(node).intValue();
+        }
+        edgeStart[nodes] = edge;
+
+        // Breadth first, so a node's failure link is complete before its children are visited
+        int[] queue = new int[nodes];
+        int head = 0;
+        int tail = 0;
+        for (int e = edgeStart[0]; e < edgeStart[1]; e++) {
+            queue[tail++] = edgeTargets[e];
+        }
+
+        while (head < tail) {
+            int node = queue[head++];
+            for (int e = edgeStart[node]; e < edgeStart[node + 1]; e++) {
+                int target = edgeTargets[e];
+                int state = fail[node];
+                int next = transition(state, edgeChars[e]);
+                while (next < 0 && state != 0) {
+                    state = fail[state];
+                    next = transition(state, edgeChars[e]);
+                }
+
+                fail[target] = (next < 0 || next == target) ? 0 : next;
+                matches[target] += matches[fail[target]];
+                queue[tail++] = target;
+            }
+        }
+    }
+
+    /**
+     * Return the transition from a node on a character
+     *
+     * @return Target node, or <code>-1</code> if there is no transition
+     */
+    private int transition(int node, char c) {
+        int index = Arrays.binarySearch(edgeChars, edgeStart[node], edgeStart[node + 1], c);
+        return (index >= 0) ? edgeTargets[index] : -1;
+    }
+
+    /**
+     * Count the keyword occurrences in a text. Overlapping occurrences are all counted.
+     *
+     * @param text Text to scan, may be <code>null</code>
+     * @param limit Stop counting once this many occurrences have been found
+     * @return Number of occurrences, at most <code>limit</code>
+     */
+    public int count(String text, int limit) {
+        if (text == null || keywords == 0) {
+            return 0;
+        }
+
+        int found = 0;
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            int next = transition(state, c);
+            while (next < 0 && state != 0) {
+                state = fail[state];
+                next = transition(state, c);
+            }
+
+            state = (next < 0) ? 0 : next;
+            found += matches[state];
+            if (found >= limit) {
+                return limit;
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * Return the number of keywords
+     *
+     * @return Number of keywords
+     */
+    public int size() {
+        return keywords;
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright (c) 2005-2007, David A. Czarnecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the "David A. Czarnecki" nor the names of
+ * its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * Products derived from this software may not be called "Akismet Java API",
+ * nor may "Akismet Java API" appear in their name, without prior written permission of
+ * David A. Czarnecki.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sf.akismet;
+
+/**
+ * Pre-filter that marks a comment as spam when its content contains at least a maximum number of links.
+ * Each HTML anchor (<code>&lt;a </code> up to its <code>&lt;/a&gt;</code>) counts as one link, whatever URLs
+ * its attributes and text contain, and so does each <code>http://</code> or <code>https://</code> URL outside an
+ * anchor. Matching is case-insensitive.
+ *
+ * @version $Id$
+ */
+public class LinkFilter implements PreFilter {
+
+    public static final int DEFAULT_MAX_LINKS = 10;
+
+    private static final String ANCHOR = "<a";
+    private static final String ANCHOR_END = "</a>";
+    private static final String HTTP = "http://";
+    private static final String HTTPS = "https://";
+
+    private volatile int maxLinks = DEFAULT_MAX_LINKS;
+
+    /**
+     * Construct a filter with the default maximum number of links
+     */
+    public LinkFilter() {
+    }
+
+    /**
+     * Construct a filter
+     *
+     * @param maxLinks Number of links from which a comment is spam
+     */
+    public LinkFilter(int maxLinks) {
+        setMaxLinks(maxLinks);
+    }
+
+    /**
+     * Sets the number of links from which a comment is spam
+     *
+     * @param maxLinks Number of links, at least 1
+     */
+    public void setMaxLinks(int maxLinks) {
+        if (maxLinks < 1) {
+            throw new IllegalArgumentException("Maximum links must be at least 1");
+        }
+
+        this.maxLinks = maxLinks;
+    }
+
+    public Verdict filter(CommentRequest request) {
+        int limit = maxLinks;
+        return (count(request.getCommentContent(), limit) >= limit) ? Verdict.SPAM : Verdict.UNKNOWN;
+    }
+
+    /**
+     * Count the links in a text, stopping at a limit
+     *
+     * @param text  Text, may be <code>null</code>
+     * @param limit Count at which to stop
+     * @return Number of links, at most the limit
+     */
+    static int count(String text, int limit) {
+        if (text == null) {
+            return 0;
+        }
+
+        int found = 0;
+        int length = text.length();
+        int i = 0;
+        while (i < length && found < limit) {
+            if (text.charAt(i) == '<' && i + ANCHOR.length() < length && text.regionMatches(true, i, ANCHOR, 0, ANCHOR.length())
+                    && Character.isWhitespace(text.charAt(i + ANCHOR.length()))) {
+                found++;
+                int end = indexOfIgnoreCase(text, ANCHOR_END, i + ANCHOR.length());
+                i = (end < 0) ? length : end + ANCHOR_END.length();
+            } else if ((text.charAt(i) == 'h' || text.charAt(i) == 'H')
+                    && (text.regionMatches(true, i, HTTP, 0, HTTP.length()) || text.regionMatches(true, i, HTTPS, 0, HTTPS.length()))) {
+                found++;
+                i = endOfUrl(text, i);
+            } else {
+                i++;
+            }
+        }
+
+        return found;
+    }
+
+    private static int endOfUrl(String text, int start) {
+        int i = start;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c) || c == '<' || c == '>' || c == '"' || c == '\'') {
+                break;
+            }
+            i++;
+        }
+
+        return i;
+    }
+
+    private static int indexOfIgnoreCase(String text, String search, int from) {
+        for (int i = from; i <= text.length() - search.length(); i++) {
+            if (text.regionMatches(true, i, search, 0, search.length())) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+}
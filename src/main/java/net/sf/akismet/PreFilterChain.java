@@ -0,0 +1,87 @@
+/**
+ * Copyright (c) 2005-2007, David A. Czarnecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the "David A. Czarnecki" nor the names of
+ * its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * Products derived from this software may not be called "Akismet Java API",
+ * nor may "Akismet Java API" appear in their name, without prior written permission of
+ * David A. Czarnecki.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sf.akismet;
+
+/**
+ * Runs a sequence of {@link PreFilter}s and returns the first definite verdict. The sequence can be replaced
+ * at any time; calls in progress finish with the sequence they started with.
+ *
+ * @version $Id$
+ */
+public class PreFilterChain implements PreFilter {
+
+    private volatile PreFilter[] filters;
+
+    /**
+     * Construct a chain
+     *
+     * @param filters Filters in the order they are run
+     */
+    public PreFilterChain(PreFilter[] filters) {
+        setFilters(filters);
+    }
+
+    /**
+     * Replace the filters
+     *
+     * @param filters Filters in the order they are run
+     */
+    public void setFilters(PreFilter[] filters) {
+        if (filters == null) {
+            throw new IllegalArgumentException("Filters cannot be null");
+        }
+
+        this.filters = filters.clone();
+    }
+
+    /**
+     * Return the filters
+     *
+     * @return Filters in the order they are run
+     */
+    public PreFilter[] getFilters() {
+        return filters.clone();
+    }
+
+    public Verdict filter(CommentRequest request) {
+        PreFilter[] current = filters;
+        for (int i = 0; i < current.length; i++) {
+            Verdict verdict = current[i].filter(request);
+            if (verdict != Verdict.UNKNOWN) {
+                return verdict;
+            }
+        }
+
+        return Verdict.UNKNOWN;
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright (c) 2005-2007, David A. Czarnecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the "David A. Czarnecki" nor the names of
+ * its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * Products derived from this software may not be called "Akismet Java API",
+ * nor may "Akismet Java API" appear in their name, without prior written permission of
+ * David A. Czarnecki.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sf.akismet;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits extra requests, retries or hedges, to a share of the calls made. Every call deposits a fraction of a
+ * token, every extra request takes a whole one, and the balance is capped so that a quiet period cannot build
+ * up a large burst. This keeps retries from multiplying the load on Akismet when it is failing.
+ *
+ * @version $Id$
+ */
+public class RetryBudget {
+
+    private static final long SCALE = 1000;
+
+    private final long deposit;
+    private final long maxBalance;
+    private final AtomicLong balance;
+
+    /**
+     * Construct a budget
+     *
+     * @param ratio   Largest share of extra requests, for example <code>0.1</code> for 10% of the calls
+     * @param reserve Extra requests allowed before any calls are made, which is also the largest balance
+     */
+    public RetryBudget(double ratio, int reserve) {
+        if (!(ratio > 0) || ratio > 1) {
+            throw new IllegalArgumentException("Ratio must be greater than 0 and at most 1");
+        }
+        if (reserve < 1) {
+            throw new IllegalArgumentException("Reserve must be at least 1");
+        }
+
+        this.deposit = Math.max(1, Math.round(ratio * SCALE));
+        this.maxBalance = reserve * SCALE;
+        this.balance = new AtomicLong(maxBalance);
+    }
+
+    /**
+     * Record a call
+     */
+    public void deposit() {
+        long current;
+        do {
+            current = balance.get();
+            if (current >= maxBalance) {
+                return;
+            }
+        } while (!balance.compareAndSet(current, Math.min(maxBalance, current + deposit)));
+    }
+
+    /**
+     * Take the budget for an extra request
+     *
+     * @return <code>true</code> if the extra request may be made, <code>false</code> if the budget is spent
+     */
+    public boolean withdraw() {
+        long current;
+        do {
+            current = balance.get();
+            if (current < SCALE) {
+                return false;
+            }
+        } while (!balance.compareAndSet(current, current - SCALE));
+
+        return true;
+    }
+
+    /**
+     * Return the number of extra requests allowed now
+     *
+     * @return Number of extra requests
+     */
+    public int getAvailable() {
+        return (int) (balance.get() / SCALE);
+    }
+}
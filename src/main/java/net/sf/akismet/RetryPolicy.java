@@ -0,0 +1,162 @@
+/**
+ * Copyright (c) 2005-2007, David A. Czarnecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the "David A. Czarnecki" nor the names of
+ * its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * Products derived from this software may not be called "Akismet Java API",
+ * nor may "Akismet Java API" appear in their name, without prior written permission of
+ * David A. Czarnecki.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sf.akismet;
+
+import org.apache.commons.httpclient.ConnectTimeoutException;
+import org.apache.commons.httpclient.NoHttpResponseException;
+
+import java.net.ConnectException;
+import java.net.http.HttpConnectTimeoutException;
+import java.util.Random;
+
+/**
+ * Retry policy for comment-check. A call is retried only when Akismet could not be connected to, closed the
+ * connection without answering, or answered with a 5xx status; timeouts and <code>invalid</code> answers are not
+ * retried. Retries wait with exponential backoff and full jitter, and are limited by a {@link RetryBudget}.
+ *
+ * @version $Id$
+ */
+public class RetryPolicy {
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    public static final long DEFAULT_BASE_DELAY = 50;
+    public static final long DEFAULT_MAX_DELAY = 1000;
+    public static final double DEFAULT_BUDGET_RATIO = 0.1;
+    public static final int DEFAULT_BUDGET_RESERVE = 10;
+
+    private final int maxAttempts;
+    private final long baseDelay;
+    private final long maxDelay;
+    private final RetryBudget budget;
+    private final Random random = new Random();
+
+    /**
+     * Construct a policy with the default settings: 3 attempts, delays from 50 milliseconds up to 1 second, and
+     * retries for at most 10% of the calls
+     */
+    public RetryPolicy() {
+        this(DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_DELAY, DEFAULT_MAX_DELAY, new RetryBudget(DEFAULT_BUDGET_RATIO, DEFAULT_BUDGET_RESERVE));
+    }
+
+    /**
+     * Construct a policy
+     *
+     * @param maxAttempts Largest number of attempts per call, including the first
+     * @param baseDelay   Longest delay in milliseconds before the first retry, doubled for each further retry
+     * @param maxDelay    Longest delay in milliseconds before any retry
+     * @param budget      Budget limiting the retries
+     */
+    public RetryPolicy(int maxAttempts, long baseDelay, long maxDelay, RetryBudget budget) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("Max attempts must be at least 1");
+        }
+        if (baseDelay < 0 || maxDelay < baseDelay) {
+            throw new IllegalArgumentException("Delays must satisfy 0 <= base delay <= max delay");
+        }
+        if (budget == null) {
+            throw new IllegalArgumentException("Budget cannot be null");
+        }
+
+        this.maxAttempts = maxAttempts;
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+        this.budget = budget;
+    }
+
+    /**
+     * Check to see if a call should be retried, taking the budget for the retry if so
+     *
+     * @param attempt       Number of attempts made so far
+     * @param akismetResult Result of the last attempt
+     * @return <code>true</code> if the call should be retried, <code>false</code> otherwise
+     */
+    boolean shouldRetry(int attempt, AkismetResult akismetResult) {
+        return attempt < maxAttempts && isRetryable(akismetResult) && budget.withdraw();
+    }
+
+    /**
+     * Record a call, adding to the budget
+     */
+    void onCall() {
+        budget.deposit();
+    }
+
+    /**
+     * Return the delay before a retry, chosen at random up to the exponential backoff for the attempt
+     *
+     * @param attempt Number of attempts made so far
+     * @return Delay in milliseconds
+     */
+    long getDelay(int attempt) {
+        long ceiling = baseDelay << Math.min(attempt - 1, 30);
+        if (ceiling > maxDelay || ceiling < 0) {
+            ceiling = maxDelay;
+        }
+
+        return ceiling == 0 ? 0 : (long) (random.nextDouble() * ceiling);
+    }
+
+    /**
+     * Check to see if a result is a failure worth retrying
+     *
+     * @param akismetResult Result of an attempt
+     * @return <code>true</code> for connect failures and 5xx answers, <code>false</code> otherwise
+     */
+    public static boolean isRetryable(AkismetResult akismetResult) {
+        Exception exception = akismetResult.getException();
+        if (exception != null) {
+            return exception instanceof ConnectException || exception instanceof ConnectTimeoutException
+                    || exception instanceof HttpConnectTimeoutException || exception instanceof NoHttpResponseException;
+        }
+
+        return akismetResult.getHttpStatus() >= 500;
+    }
+
+    /**
+     * Return the largest number of attempts per call
+     *
+     * @return Number of attempts, including the first
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Return the budget limiting the retries
+     *
+     * @return Retry budget
+     */
+    public RetryBudget getBudget() {
+        return budget;
+    }
+}
@@ -0,0 +1,286 @@
+/**
+ * Copyright (c) 2005-2007, David A. Czarnecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the "David A. Czarnecki" nor the names of
+ * its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * Products derived from this software may not be called "Akismet Java API",
+ * nor may "Akismet Java API" appear in their name, without prior written permission of
+ * David A. Czarnecki.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sf.akismet;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket rate limiter. Tokens are added at a fixed rate up to the capacity of the bucket, which is the
+ * largest burst allowed after a quiet period. {@link #acquire()} waits for a token, {@link #tryAcquire()}
+ * fails fast instead.
+ * <p></p>
+ * Callers waiting with {@link Priority#INTERACTIVE} priority are served before those with
+ * {@link Priority#BACKGROUND} priority, and background callers can be kept from taking the last tokens with
+ * {@link #setInteractiveReserve(int)}.
+ * <p></p>
+ * One bucket can be {@link #shared(String, double, int) shared} by every {@link Akismet} instance using an API
+ * key, so the instances of a process together stay under the rate Akismet allows for the key.
+ *
+ * @version $Id$
+ */
+public class TokenBucket {
+
+    /**
+     * Priority of a caller
+     */
+    public enum Priority {
+        /**
+         * A user is waiting, such as for comment-check
+         */
+        INTERACTIVE,
+
+        /**
+         * Nobody is waiting, such as for submit-spam and submit-ham feedback or a bulk scan
+         */
+        BACKGROUND
+    }
+
+    private static final ConcurrentMap<String, TokenBucket> shared = new ConcurrentHashMap<String, TokenBucket>();
+
+    private final double capacity;
+    private final double nanosPerToken;
+    private double tokens;
+    private long refilled;
+    private int interactiveReserve;
+    private int interactiveWaiting;
+
+    /**
+     * Construct a bucket that starts full
+     *
+     * @param rate     Tokens added per second
+     * @param capacity Largest number of tokens held
+     */
+    public TokenBucket(double rate, int capacity) {
+        if (!(rate > 0)) {
+            throw new IllegalArgumentException("Rate must be positive");
+        }
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        }
+
+        this.capacity = capacity;
+        this.nanosPerToken = TimeUnit.SECONDS.toNanos(1) / rate;
+        this.tokens = capacity;
+        this.refilled = System.nanoTime();
+    }
+
+    /**
+     * Return the bucket shared by every instance using an API key, creating it if necessary. When a bucket
+     * already exists for the key it is returned unchanged.
+     *
+     * @param apiKey   Akismet API key
+     * @param rate     Tokens added per second
+     * @param capacity Largest number of tokens held
+     * @return Bucket for the key
+     */
+    public static TokenBucket shared(String apiKey, double rate, int capacity) {
+        if (apiKey == null) {
+            throw new IllegalArgumentException("API key cannot be null");
+        }
+
+        TokenBucket bucket = shared.get(apiKey);
+        if (bucket == null) {
+            TokenBucket created = new TokenBucket(rate, capacity);
+            bucket = shared.putIfAbsent(apiKey, created);
+            if (bucket == null) {
+                bucket = created;
+            }
+        }
+
+        return bucket;
+    }
+
+    /**
+     * Return the bucket shared by every instance using an API key
+     *
+     * @param apiKey Akismet API key
+     * @return Bucket for the key, or <code>null</code> if there is none
+     */
+    public static TokenBucket getShared(String apiKey) {
+        return apiKey == null ? null : shared.get(apiKey);
+    }
+
+    /**
+     * Stop limiting the calls made with an API key
+     *
+     * @param apiKey Akismet API key
+     */
+    public static void removeShared(String apiKey) {
+        if (apiKey != null) {
+            shared.remove(apiKey);
+        }
+    }
+
+    /**
+     * Sets the number of tokens background callers leave for interactive callers. Defaults to <code>0</code>.
+     *
+     * @param interactiveReserve Number of tokens, less than the capacity
+     */
+    public synchronized void setInteractiveReserve(int interactiveReserve) {
+        if (interactiveReserve < 0 || interactiveReserve >= capacity) {
+            throw new IllegalArgumentException("Interactive reserve must be between 0 and the capacity");
+        }
+
+        this.interactiveReserve = interactiveReserve;
+    }
+
+    /**
+     * Take a token with interactive priority, waiting until one is available
+     *
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public void acquire() throws InterruptedException {
+        acquire(Priority.INTERACTIVE);
+    }
+
+    /**
+     * Take a token, waiting until one is available
+     *
+     * @param priority Priority of the caller
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public void acquire(Priority priority) throws InterruptedException {
+        tryAcquire(priority, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Take a token with interactive priority if one is available now
+     *
+     * @return <code>true</code> if a token was taken, <code>false</code> otherwise
+     */
+    public boolean tryAcquire() {
+        return tryAcquire(Priority.INTERACTIVE);
+    }
+
+    /**
+     * Take a token if one is available now
+     *
+     * @param priority Priority of the caller
+     * @return <code>true</code> if a token was taken, <code>false</code> otherwise
+     */
+    public synchronized boolean tryAcquire(Priority priority) {
+        refill();
+        if (!available(priority == Priority.INTERACTIVE)) {
+            return false;
+        }
+
+        tokens -= 1;
+        return true;
+    }
+
+    /**
+     * Take a token, waiting up to the given time for one to become available
+     *
+     * @param priority Priority of the caller
+     * @param timeout  Longest time to wait
+     * @param unit     Unit of the timeout
+     * @return <code>true</code> if a token was taken, <code>false</code> if the time elapsed
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public synchronized boolean tryAcquire(Priority priority, long timeout, TimeUnit unit) throws InterruptedException {
+        boolean interactive = priority == Priority.INTERACTIVE;
+        long remaining = unit.toNanos(timeout);
+
+        if (interactive) {
+            interactiveWaiting++;
+        }
+        try {
+            while (true) {
+                refill();
+                if (available(interactive)) {
+                    tokens -= 1;
+                    return true;
+                }
+                if (remaining <= 0) {
+                    return false;
+                }
+
+                // Background callers blocked by interactive callers are woken when those leave
+                double needed = (interactive ? 1 : 1 + interactiveReserve) - tokens;
+                long wait = Math.min(remaining, Math.max(1, (long) (needed * nanosPerToken)));
+                long start = System.nanoTime();
+                TimeUnit.NANOSECONDS.timedWait(this, wait);
+                remaining -= System.nanoTime() - start;
+            }
+        } finally {
+            if (interactive) {
+                interactiveWaiting--;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Return the number of tokens available now
+     *
+     * @return Number of tokens
+     */
+    public synchronized double getAvailable() {
+        refill();
+        return tokens;
+    }
+
+    /**
+     * Return the rate tokens are added at
+     *
+     * @return Tokens per second
+     */
+    public double getRate() {
+        return TimeUnit.SECONDS.toNanos(1) / nanosPerToken;
+    }
+
+    /**
+     * Return the largest number of tokens held
+     *
+     * @return Capacity
+     */
+    public int getCapacity() {
+        return (int) capacity;
+    }
+
+    private boolean available(boolean interactive) {
+        if (interactive) {
+            return tokens >= 1;
+        }
+
+        return interactiveWaiting == 0 && tokens >= 1 + interactiveReserve;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - refilled) / nanosPerToken);
+        refilled = now;
+    }
+}
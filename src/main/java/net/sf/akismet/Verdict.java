@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) 2005-2007, David A. Czarnecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the "David A. Czarnecki" nor the names of
+ * its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * Products derived from this software may not be called "Akismet Java API",
+ * nor may "Akismet Java API" appear in their name, without prior written permission of
+ * David A. Czarnecki.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sf.akismet;
+
+/**
+ * Verdict on a comment
+ *
+ * @version $Id$
+ */
+public enum Verdict {
+
+    /**
+     * The comment is spam
+     */
+    SPAM,
+
+    /**
+     * The comment is blatant spam that Akismet advises discarding without storing it, signalled by the
+     * <code>X-akismet-pro-tip: discard</code> response header
+     */
+    DISCARD,
+
+    /**
+     * The comment is not spam
+     */
+    HAM,
+
+    /**
+     * No verdict is available, for example because Akismet was not called or the call does not return one
+     */
+    UNKNOWN,
+
+    /**
+     * Akismet could not be reached, answered with an error status, or answered with something other than a verdict,
+     * such as <code>invalid</code>
+     */
+    ERROR;
+
+    /**
+     * Check to see if the verdict identifies the comment as spam
+     *
+     * @return <code>true</code> for {@link #SPAM} and {@link #DISCARD}, <code>false</code> otherwise
+     */
+    public boolean isSpam() {
+        return this == SPAM || this == DISCARD;
+    }
+}
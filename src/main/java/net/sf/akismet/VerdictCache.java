@@ -0,0 +1,282 @@
+/**
+ * Copyright (c) 2005-2007, David A. Czarnecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the "David A. Czarnecki" nor the names of
+ * its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * Products derived from this software may not be called "Akismet Java API",
+ * nor may "Akismet Java API" appear in their name, without prior written permission of
+ * David A. Czarnecki.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sf.akismet;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory cache of comment-check results, keyed on a 64-bit fingerprint of the blog and encoded request.
+ * <p></p>
+ * Repeated checks of identical content (retried form posts, double submits, replayed spam) are answered from
+ * the cache instead of calling Akismet again. Entries expire after a fixed time to live, and the least recently
+ * used entries are evicted when the cache is full. Only definite answers from Akismet are cached. A cache can be
+ * shared between {@link Akismet} instances, since the blog is part of the fingerprint.
+ * <p></p>
+ * The cache is split into segments chosen by fingerprint, each with its own lock and its own share of the
+ * maximum size, so concurrent lookups of different comments rarely contend. Each entry keeps the blog and request
+ * it was stored for and a lookup only hits when both are equal, so two comments with the same fingerprint never
+ * see each other's result.
+ *
+ * @version $Id$
+ */
+public class VerdictCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 10000;
+    public static final long DEFAULT_TIME_TO_LIVE = 10 * 60 * 1000L;
+
+    private static final int MAX_SEGMENTS = 16;
+
+    private final int maxEntries;
+    private final long timeToLive;
+    private final Segment[] segments;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Construct a cache with the default size and time to live
+     */
+    public VerdictCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TIME_TO_LIVE);
+    }
+
+    /**
+     * Construct a cache
+     *
+     * @param maxEntries Maximum number of cached results
+     * @param timeToLive Time in milliseconds a result stays in the cache
+     * @throws IllegalArgumentException If either the maximum number of entries or time to live is less than 1
+     */
+    public VerdictCache(int maxEntries, long timeToLive) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Maximum entries must be at least 1");
+        }
+
+        if (timeToLive < 1) {
+            throw new IllegalArgumentException("Time to live must be at least 1");
+        }
+
+        this.maxEntries = maxEntries;
+        this.timeToLive = timeToLive;
+
+        // A power of two no larger than the maximum size, so every segment holds at least one entry
+        int count = Math.min(MAX_SEGMENTS, Integer.highestOneBit(maxEntries));
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(maxEntries / count + (i < maxEntries % count ? 1 : 0));
+        }
+    }
+
+    /**
+     * Return the cached result for a request
+     *
+     * @param blog    Blog
+     * @param request Comment
+     * @return Cached result, or <code>null</code> if there is no unexpired result
+     */
+    public AkismetResult get(String blog, CommentRequest request) {
+        long fingerprint = fingerprint(blog, request);
+        Long key = Long.valueOf(fingerprint);
+        Segment segment = segmentFor(fingerprint);
+        CachedResult entry;
+        synchronized (segment) {
+            entry = segment.get(key);
+            if (entry != null && entry.expires <= System.currentTimeMillis()) {
+                segment.remove(key);
+                entry = null;
+            }
+        }
+
+        if (entry == null || !entry.matches(blog, request)) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+        return entry.result;
+    }
+
+    /**
+     * Cache a result. A result already cached for another request with the same fingerprint is replaced.
+     *
+     * @param blog    Blog
+     * @param request Comment
+     * @param result  Result
+     */
+    public void put(String blog, CommentRequest request, AkismetResult result) {
+        long fingerprint = fingerprint(blog, request);
+        CachedResult entry = new CachedResult(blog, request, result, System.currentTimeMillis() + timeToLive);
+        Segment segment = segmentFor(fingerprint);
+        synchronized (segment) {
+            segment.put(Long.valueOf(fingerprint), entry);
+        }
+    }
+
+    /**
+     * Remove the cached result for a request
+     *
+     * @param blog    Blog
+     * @param request Comment
+     */
+    public void invalidate(String blog, CommentRequest request) {
+        long fingerprint = fingerprint(blog, request);
+        Long key = Long.valueOf(fingerprint);
+        Segment segment = segmentFor(fingerprint);
+        synchronized (segment) {
+            CachedResult entry = segment.get(key);
+            if (entry != null && entry.matches(blog, request)) {
+                segment.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Remove all cached results. The hit and miss counters are not reset.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * Return the number of cached results, including expired results not yet removed
+     *
+     * @return Number of cached results
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * Return the maximum number of cached results
+     *
+     * @return Maximum number of cached results
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Return the number of lookups that found a cached result
+     *
+     * @return Number of cache hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Return the number of lookups that did not find a cached result
+     *
+     * @return Number of cache misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Compute the fingerprint of a request for a blog. The {@link CommentRequest#getFingerprint() request
+     * fingerprint} covers the encoded parameters in a canonical order; the blog is mixed in so that one cache
+     * can serve several blogs.
+     *
+     * @param blog    Blog
+     * @param request Comment
+     * @return Fingerprint
+     */
+    public static long fingerprint(String blog, CommentRequest request) {
+        long hash = CommentRequest.FNV_OFFSET_BASIS;
+        for (int i = 0; i < blog.length(); i++) {
+            char c = blog.charAt(i);
+            hash = (hash ^ (c & 0xff)) * CommentRequest.FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * CommentRequest.FNV_PRIME;
+        }
+
+        long requestFingerprint = request.getFingerprint();
+        for (int shift = 0; shift < 64; shift += 8) {
+            hash = (hash ^ ((requestFingerprint >>> shift) & 0xff)) * CommentRequest.FNV_PRIME;
+        }
+
+        return hash;
+    }
+
+    private Segment segmentFor(long fingerprint) {
+        int hash = (int) (fingerprint ^ (fingerprint >>> 32));
+        return segments[(hash ^ (hash >>> 16)) & (segments.length - 1)];
+    }
+
+    private static class Segment extends LinkedHashMap<Long, CachedResult> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        protected boolean removeEldestEntry(Map.Entry<Long, CachedResult> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    private static class CachedResult {
+
+        final String blog;
+        final CommentRequest request;
+        final AkismetResult result;
+        final long expires;
+
+        CachedResult(String blog, CommentRequest request, AkismetResult result, long expires) {
+            this.blog = blog;
+            this.request = request;
+            this.result = result;
+            this.expires = expires;
+        }
+
+        boolean matches(String blog, CommentRequest request) {
+            return this.blog.equals(blog) && this.request.equals(request);
+        }
+    }
+}
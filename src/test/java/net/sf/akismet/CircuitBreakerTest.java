@@ -0,0 +1,225 @@
+/**
+ * Copyright (c) 2005-2007, David A. Czarnecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the "David A. Czarnecki" nor the names of
+ * its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * Products derived from this software may not be called "Akismet Java API",
+ * nor may "Akismet Java API" appear in their name, without prior written permission of
+ * David A. Czarnecki.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sf.akismet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link CircuitBreaker}
+ *
+ * @version $Id$
+ */
+public class CircuitBreakerTest {
+
+    private static CircuitBreaker breaker(long openDuration) {
+        CircuitBreaker breaker = new CircuitBreaker(60000);
+        breaker.setMinimumCalls(4);
+        breaker.setFailureRateThreshold(50);
+        breaker.setOpenDuration(openDuration);
+        breaker.setHalfOpenCalls(2);
+        return breaker;
+    }
+
+    private static void call(CircuitBreaker breaker, boolean success) {
+        assertTrue(breaker.allowRequest());
+        if (success) {
+            breaker.recordSuccess(1);
+        } else {
+            breaker.recordFailure(1);
+        }
+    }
+
+    private static CircuitBreaker opened(long openDuration) {
+        CircuitBreaker breaker = breaker(openDuration);
+        for (int i = 0; i < 4; i++) {
+            call(breaker, false);
+        }
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        return breaker;
+    }
+
+    @Test
+    public void testStaysClosedBelowMinimumCalls() {
+        CircuitBreaker breaker = breaker(60000);
+        for (int i = 0; i < 3; i++) {
+            call(breaker, false);
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testStaysClosedBelowFailureRate() {
+        CircuitBreaker breaker = breaker(60000);
+        for (int i = 0; i < 10; i++) {
+            call(breaker, i % 3 == 0);
+            call(breaker, true);
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testOpensAtFailureRate() {
+        CircuitBreaker breaker = breaker(60000);
+        call(breaker, true);
+        call(breaker, false);
+        call(breaker, true);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        call(breaker, false);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    public void testOpensAtSlowCallRate() {
+        CircuitBreaker breaker = breaker(60000);
+        breaker.setSlowCallDuration(100);
+        breaker.setSlowCallRateThreshold(75);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(breaker.allowRequest());
+            breaker.recordSuccess(100);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        call(breaker, true);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void testCancelledCallsNotCounted() {
+        CircuitBreaker breaker = breaker(60000);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(breaker.allowRequest());
+            breaker.recordCancelled();
+        }
+        call(breaker, false);
+        call(breaker, false);
+        call(breaker, false);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testFailuresExpireFromWindow() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(100);
+        breaker.setMinimumCalls(4);
+        call(breaker, false);
+        call(breaker, false);
+        call(breaker, false);
+
+        Thread.sleep(150);
+
+        call(breaker, true);
+        call(breaker, false);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testHalfOpenAfterOpenDuration() throws Exception {
+        CircuitBreaker breaker = opened(50);
+        assertFalse(breaker.allowRequest());
+
+        Thread.sleep(100);
+
+        assertTrue(breaker.allowRequest());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.allowRequest());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    public void testHalfOpenClosesWhenTrialsSucceed() throws Exception {
+        CircuitBreaker breaker = opened(50);
+        Thread.sleep(100);
+
+        call(breaker, true);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        call(breaker, true);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        // The calls recorded before opening were cleared
+        call(breaker, false);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testHalfOpenReopensOnFailure() throws Exception {
+        CircuitBreaker breaker = opened(50);
+        Thread.sleep(100);
+
+        call(breaker, true);
+        call(breaker, false);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    public void testHalfOpenCancelReturnsPermit() throws Exception {
+        CircuitBreaker breaker = opened(50);
+        Thread.sleep(100);
+
+        assertTrue(breaker.allowRequest());
+        assertTrue(breaker.allowRequest());
+        assertFalse(breaker.allowRequest());
+
+        breaker.recordCancelled();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void testReset() {
+        CircuitBreaker breaker = opened(60000);
+        breaker.reset();
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsShortWindow() {
+        new CircuitBreaker(9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsFailureRateOver100() {
+        new CircuitBreaker().setFailureRateThreshold(101);
+    }
+}
@@ -0,0 +1,203 @@
+/**
+ * Copyright (c) 2005-2007, David A. Czarnecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the "David A. Czarnecki" nor the names of
+ * its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * Products derived from this software may not be called "Akismet Java API",
+ * nor may "Akismet Java API" appear in their name, without prior written permission of
+ * David A. Czarnecki.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sf.akismet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.net.URLEncoder;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link CommentRequest} and its form encoding
+ *
+ * @version $Id$
+ */
+public class CommentRequestTest {
+
+    private static final String[] VALUES = {
+            "",
+            "plain",
+            "with space",
+            "-_.*",
+            "~!'()",
+            "a&b=c+d%e/f?g#h",
+            "tab\tnewline\r\n",
+            "café naïve",
+            "€ 中文",
+            "emoji 😀",
+            "unpaired \ud83d high",
+            "unpaired \ude00 low",
+            "trailing \ud83d"
+    };
+
+    private static String form(String name, String value) throws Exception {
+        CommentRequest.FormBuffer buffer = new CommentRequest.FormBuffer(0);
+        buffer.append(name, value);
+        return new String(buffer.toByteArray(), "US-ASCII");
+    }
+
+    @Test
+    public void testEncodingMatchesURLEncoder() throws Exception {
+        for (int i = 0; i < VALUES.length; i++) {
+            assertEquals(VALUES[i], "comment_content=" + URLEncoder.encode(VALUES[i], "UTF-8"), form("comment_content", VALUES[i]));
+        }
+    }
+
+    @Test
+    public void testEncodingGrowsBuffer() throws Exception {
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            value.append("é ");
+        }
+
+        assertEquals("x=" + URLEncoder.encode(value.toString(), "UTF-8"), form("x", value.toString()));
+    }
+
+    @Test
+    public void testFormBufferSeparatorsAndNullValues() throws Exception {
+        CommentRequest.FormBuffer buffer = new CommentRequest.FormBuffer(1);
+        buffer.append("a", null);
+        buffer.append("b", "1");
+        buffer.append("c", null);
+        buffer.append("d", "2 3");
+
+        assertEquals("b=1&d=2+3", new String(buffer.toByteArray(), "US-ASCII"));
+    }
+
+    @Test
+    public void testEncodedBodyOrder() throws Exception {
+        CommentRequest request = new CommentRequest.Builder()
+                .commentContent("hello world")
+                .author("Jane")
+                .other("z_extra", "1")
+                .other("a_extra", "2")
+                .build();
+
+        assertEquals("user_ip=&comment_author=Jane&comment_content=hello+world&a_extra=2&z_extra=1",
+                new String(request.getEncodedBody(), "US-ASCII"));
+    }
+
+    /**
+     * Unpaired surrogates encode as <code>?</code>, as {@link URLEncoder} does, so only the encoded form is
+     * compared for every value
+     */
+    @Test
+    public void testParseRoundTrip() throws Exception {
+        for (int i = 0; i < VALUES.length; i++) {
+            CommentRequest request = new CommentRequest.Builder()
+                    .ipAddress("127.0.0.1")
+                    .userAgent("Mozilla/5.0 (X11)")
+                    .referrer("http://example.com/?a=1&b=2")
+                    .permalink("http://example.com/post")
+                    .commentType("comment")
+                    .author(VALUES[i])
+                    .authorEmail("jane+tag@example.com")
+                    .authorURL("http://example.com/~jane")
+                    .commentContent(VALUES[i])
+                    .other("blog_lang", "en, fr")
+                    .other("custom", VALUES[i])
+                    .build();
+
+            CommentRequest parsed = CommentRequest.parse(new String(request.getEncodedBody(), "US-ASCII"));
+
+            assertEquals(VALUES[i], request, parsed);
+            assertArrayEquals(request.getEncodedBody(), parsed.getEncodedBody());
+            assertEquals(request.getFingerprint(), parsed.getFingerprint());
+            assertEquals(request.getReferrer(), parsed.getReferrer());
+            assertEquals(request.getOther().keySet(), parsed.getOther().keySet());
+        }
+    }
+
+    @Test
+    public void testParseRoundTripOfDecodableValues() throws Exception {
+        CommentRequest request = new CommentRequest.Builder().commentContent("café 😀 & more").build();
+        CommentRequest parsed = CommentRequest.parse(new String(request.getEncodedBody(), "US-ASCII"));
+
+        assertEquals("café 😀 & more", parsed.getCommentContent());
+        assertEquals("", parsed.getIpAddress());
+        assertNull(parsed.getAuthor());
+    }
+
+    @Test
+    public void testParseSkipsMalformedPairs() {
+        CommentRequest parsed = CommentRequest.parse("user_ip=1.2.3.4&&novalue&=orphan&comment_content=x");
+
+        assertEquals("1.2.3.4", parsed.getIpAddress());
+        assertEquals("x", parsed.getCommentContent());
+        assertEquals(0, parsed.getOther().size());
+    }
+
+    @Test
+    public void testOfSkipsNullEntries() {
+        Map<String, String> other = new HashMap<String, String>();
+        other.put("kept", "1");
+        other.put("dropped", null);
+        other.put(null, "2");
+
+        CommentRequest request = CommentRequest.of("1.2.3.4", null, null, null, null, null, null, null, "x", other);
+
+        assertEquals(1, request.getOther().size());
+        assertEquals("1", request.getOther().get("kept"));
+    }
+
+    @Test
+    public void testEqualRequestsHaveEqualFingerprints() {
+        CommentRequest first = new CommentRequest.Builder().commentContent("x").other("b", "2").other("a", "1").build();
+        CommentRequest second = new CommentRequest.Builder().other("a", "1").other("b", "2").commentContent("x").build();
+        CommentRequest different = new CommentRequest.Builder().commentContent("y").build();
+
+        assertEquals(first, second);
+        assertEquals(first.hashCode(), second.hashCode());
+        assertEquals(first.getFingerprint(), second.getFingerprint());
+        assertFalse(first.equals(different));
+    }
+
+    @Test
+    public void testEncodedBodyIsCopied() {
+        CommentRequest request = new CommentRequest.Builder().commentContent("x").build();
+        request.getEncodedBody()[0] = 'X';
+
+        assertEquals('u', request.getEncodedBody()[0]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOtherRejectsNullValue() {
+        new CommentRequest.Builder().other("name", null);
+    }
+}
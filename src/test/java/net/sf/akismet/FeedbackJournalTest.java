@@ -0,0 +1,268 @@
+/**
+ * Copyright (c) 2005-2007, David A. Czarnecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the "David A. Czarnecki" nor the names of
+ * its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * Products derived from this software may not be called "Akismet Java API",
+ * nor may "Akismet Java API" appear in their name, without prior written permission of
+ * David A. Czarnecki.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sf.akismet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link FeedbackJournal}
+ *
+ * @version $Id$
+ */
+public class FeedbackJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static FeedbackQueue.Feedback spam(String content) {
+        return new FeedbackQueue.Feedback(Akismet.FUNCTION_SUBMIT_SPAM,
+                new CommentRequest.Builder().ipAddress("127.0.0.1").commentContent(content).build());
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), "UTF-8");
+    }
+
+    private static void write(File file, String content, boolean append) throws IOException {
+        FileOutputStream out = new FileOutputStream(file, append);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    @Test
+    public void testNewJournalIsEmpty() throws Exception {
+        File file = new File(folder.getRoot(), "journal");
+        FeedbackJournal journal = new FeedbackJournal(file);
+        journal.close();
+
+        assertTrue(journal.getPending().isEmpty());
+        assertTrue(file.exists());
+        assertEquals("", read(file));
+    }
+
+    @Test
+    public void testPendingFeedbackSurvivesReopen() throws Exception {
+        File file = new File(folder.getRoot(), "journal");
+        FeedbackJournal journal = new FeedbackJournal(file);
+        FeedbackQueue.Feedback first = spam("first");
+        FeedbackQueue.Feedback second = spam("second");
+        FeedbackQueue.Feedback third = spam("third café");
+        journal.append(first);
+        journal.append(second);
+        journal.append(third);
+        journal.remove(second);
+        journal.close();
+
+        journal = new FeedbackJournal(file);
+        journal.close();
+        List<FeedbackQueue.Feedback> pending = journal.getPending();
+
+        assertEquals(2, pending.size());
+        assertEquals(first, pending.get(0));
+        assertEquals(third, pending.get(1));
+        assertEquals(Akismet.FUNCTION_SUBMIT_SPAM, pending.get(0).function);
+        assertEquals("third café", pending.get(1).request.getCommentContent());
+    }
+
+    @Test
+    public void testOpenCompactsDeliveredFeedback() throws Exception {
+        File file = new File(folder.getRoot(), "journal");
+        FeedbackJournal journal = new FeedbackJournal(file);
+        FeedbackQueue.Feedback delivered = spam("delivered");
+        FeedbackQueue.Feedback kept = spam("kept");
+        journal.append(delivered);
+        journal.append(kept);
+        journal.remove(delivered);
+        journal.close();
+
+        new FeedbackJournal(file).close();
+
+        assertEquals("+" + kept.journalId + "\t" + kept.encoded + "\n", read(file));
+    }
+
+    @Test
+    public void testIdsContinueAfterReopen() throws Exception {
+        File file = new File(folder.getRoot(), "journal");
+        FeedbackJournal journal = new FeedbackJournal(file);
+        FeedbackQueue.Feedback first = spam("first");
+        journal.append(first);
+        journal.close();
+
+        journal = new FeedbackJournal(file);
+        FeedbackQueue.Feedback second = spam("second");
+        journal.append(second);
+        journal.remove(journal.getPending().get(0));
+        journal.close();
+
+        assertTrue(second.journalId > first.journalId);
+        journal = new FeedbackJournal(file);
+        journal.close();
+
+        assertEquals(1, journal.getPending().size());
+        assertEquals(second, journal.getPending().get(0));
+    }
+
+    @Test
+    public void testTornLastLineIgnored() throws Exception {
+        File file = new File(folder.getRoot(), "journal");
+        FeedbackJournal journal = new FeedbackJournal(file);
+        FeedbackQueue.Feedback complete = spam("complete");
+        FeedbackQueue.Feedback torn = spam("torn");
+        journal.append(complete);
+        journal.append(torn);
+        journal.close();
+
+        // Cut the last record in the middle, as a crash while writing would
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(raf.length() - 5);
+        } finally {
+            raf.close();
+        }
+
+        journal = new FeedbackJournal(file);
+        FeedbackQueue.Feedback next = spam("next");
+        journal.append(next);
+        journal.close();
+
+        assertEquals(1, journal.getPending().size());
+        assertEquals(complete, journal.getPending().get(0));
+
+        // The torn bytes were compacted away and do not corrupt the records written after them
+        journal = new FeedbackJournal(file);
+        journal.close();
+        assertEquals(2, journal.getPending().size());
+        assertEquals(complete, journal.getPending().get(0));
+        assertEquals(next, journal.getPending().get(1));
+    }
+
+    @Test
+    public void testTornDeliveryLineKeepsFeedbackPending() throws Exception {
+        File file = new File(folder.getRoot(), "journal");
+        FeedbackJournal journal = new FeedbackJournal(file);
+        FeedbackQueue.Feedback feedback = spam("x");
+        journal.append(feedback);
+        journal.close();
+
+        // "-1" without its newline could be the start of "-12"
+        write(file, "-" + feedback.journalId, true);
+
+        journal = new FeedbackJournal(file);
+        journal.close();
+
+        assertEquals(1, journal.getPending().size());
+        assertEquals(feedback, journal.getPending().get(0));
+    }
+
+    @Test
+    public void testCorruptLinesSkipped() throws Exception {
+        File file = new File(folder.getRoot(), "journal");
+        FeedbackQueue.Feedback feedback = spam("kept");
+        write(file, "garbage\n+x\tnot-an-id\n-notanumber\n\n+7\t" + feedback.encoded + "\n+8\n", false);
+
+        FeedbackJournal journal = new FeedbackJournal(file);
+        FeedbackQueue.Feedback next = spam("next");
+        journal.append(next);
+        journal.close();
+
+        assertEquals(1, journal.getPending().size());
+        assertEquals(feedback, journal.getPending().get(0));
+        assertEquals(7, journal.getPending().get(0).journalId);
+        assertEquals(8, next.journalId);
+    }
+
+    @Test
+    public void testCompactsWhileRunning() throws Exception {
+        File file = new File(folder.getRoot(), "journal");
+        FeedbackJournal journal = new FeedbackJournal(file);
+        FeedbackQueue.Feedback kept = spam("kept");
+        journal.append(kept);
+
+        for (int i = 0; i < FeedbackJournal.COMPACT_INTERVAL - 1; i++) {
+            FeedbackQueue.Feedback feedback = spam("c" + i);
+            journal.append(feedback);
+            journal.remove(feedback);
+        }
+        long before = file.length();
+
+        FeedbackQueue.Feedback last = spam("last");
+        journal.append(last);
+        journal.remove(last);
+
+        assertTrue(file.length() < before);
+        assertEquals("+" + kept.journalId + "\t" + kept.encoded + "\n", read(file));
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+
+        // The journal is still writable after compacting
+        FeedbackQueue.Feedback after = spam("after");
+        journal.append(after);
+        journal.close();
+
+        journal = new FeedbackJournal(file);
+        journal.close();
+        assertEquals(2, journal.getPending().size());
+        assertEquals(kept, journal.getPending().get(0));
+        assertEquals(after, journal.getPending().get(1));
+    }
+
+    @Test
+    public void testRemoveOfUnjournaledFeedbackIgnored() throws Exception {
+        File file = new File(folder.getRoot(), "journal");
+        FeedbackJournal journal = new FeedbackJournal(file);
+        journal.remove(spam("never appended"));
+        journal.close();
+
+        assertEquals("", read(file));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsNullFile() throws Exception {
+        new FeedbackJournal(null);
+    }
+}
@@ -0,0 +1,204 @@
+/**
+ * Copyright (c) 2005-2007, David A. Czarnecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the "David A. Czarnecki" nor the names of
+ * its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * Products derived from this software may not be called "Akismet Java API",
+ * nor may "Akismet Java API" appear in their name, without prior written permission of
+ * David A. Czarnecki.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sf.akismet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link IpTrie}
+ *
+ * @version $Id$
+ */
+public class IpTrieTest {
+
+    @Test
+    public void testEmptyTrie() {
+        IpTrie trie = new IpTrie();
+
+        assertEquals(0, trie.size());
+        assertEquals(Verdict.UNKNOWN, trie.lookup("10.0.0.1"));
+        assertEquals(Verdict.UNKNOWN, trie.lookup("2001:db8::1"));
+    }
+
+    @Test
+    public void testPrefixZeroMatchesEveryAddress() {
+        IpTrie trie = new IpTrie();
+        trie.add("0.0.0.0/0", Verdict.SPAM);
+
+        assertEquals(Verdict.SPAM, trie.lookup("0.0.0.0"));
+        assertEquals(Verdict.SPAM, trie.lookup("127.0.0.1"));
+        assertEquals(Verdict.SPAM, trie.lookup("255.255.255.255"));
+        assertEquals(Verdict.UNKNOWN, trie.lookup("2001:db8::1"));
+    }
+
+    @Test
+    public void testPrefix32MatchesOneAddress() {
+        IpTrie trie = new IpTrie();
+        trie.add("192.168.1.10/32", Verdict.SPAM);
+        trie.add("192.168.1.20", Verdict.SPAM);
+
+        assertEquals(2, trie.size());
+        assertEquals(Verdict.SPAM, trie.lookup("192.168.1.10"));
+        assertEquals(Verdict.SPAM, trie.lookup("192.168.1.20"));
+        assertEquals(Verdict.UNKNOWN, trie.lookup("192.168.1.11"));
+        assertEquals(Verdict.UNKNOWN, trie.lookup("192.168.1.9"));
+    }
+
+    @Test
+    public void testRangeBoundaries() {
+        IpTrie trie = new IpTrie();
+        trie.add("10.1.0.0/16", Verdict.SPAM);
+
+        assertEquals(Verdict.SPAM, trie.lookup("10.1.0.0"));
+        assertEquals(Verdict.SPAM, trie.lookup("10.1.255.255"));
+        assertEquals(Verdict.UNKNOWN, trie.lookup("10.0.255.255"));
+        assertEquals(Verdict.UNKNOWN, trie.lookup("10.2.0.0"));
+    }
+
+    @Test
+    public void testMostSpecificRangeWins() {
+        IpTrie trie = new IpTrie();
+        trie.add("10.0.0.0/8", Verdict.SPAM);
+        trie.add("10.1.0.0/16", Verdict.HAM);
+        trie.add("10.1.2.3/32", Verdict.SPAM);
+
+        assertEquals(Verdict.SPAM, trie.lookup("10.2.0.1"));
+        assertEquals(Verdict.HAM, trie.lookup("10.1.0.1"));
+        assertEquals(Verdict.SPAM, trie.lookup("10.1.2.3"));
+    }
+
+    @Test
+    public void testIPv6Ranges() {
+        IpTrie trie = new IpTrie();
+        trie.add("2001:db8::/32", Verdict.SPAM);
+        trie.add("2001:db8:1::/48", Verdict.HAM);
+        trie.add("::1/128", Verdict.HAM);
+
+        assertEquals(Verdict.SPAM, trie.lookup("2001:db8::1"));
+        assertEquals(Verdict.SPAM, trie.lookup("2001:0DB8:ffff:ffff:ffff:ffff:ffff:ffff"));
+        assertEquals(Verdict.HAM, trie.lookup("2001:db8:1:2::3"));
+        assertEquals(Verdict.UNKNOWN, trie.lookup("2001:db9::1"));
+        assertEquals(Verdict.HAM, trie.lookup("::1"));
+        assertEquals(Verdict.HAM, trie.lookup("0:0:0:0:0:0:0:1"));
+        assertEquals(Verdict.UNKNOWN, trie.lookup("::2"));
+    }
+
+    @Test
+    public void testIPv6PrefixZeroDoesNotMatchIPv4() {
+        IpTrie trie = new IpTrie();
+        trie.add("::/0", Verdict.SPAM);
+
+        assertEquals(Verdict.SPAM, trie.lookup("fe80::1"));
+        assertEquals(Verdict.UNKNOWN, trie.lookup("10.0.0.1"));
+    }
+
+    @Test
+    public void testIPv4MappedAddressMatchesIPv4Range() {
+        IpTrie trie = new IpTrie();
+        trie.add("203.0.113.0/24", Verdict.SPAM);
+
+        assertEquals(Verdict.SPAM, trie.lookup("::ffff:203.0.113.7"));
+        assertEquals(Verdict.UNKNOWN, trie.lookup("::ffff:203.0.114.7"));
+    }
+
+    @Test
+    public void testUnparseableLookup() {
+        IpTrie trie = new IpTrie();
+        trie.add("0.0.0.0/0", Verdict.SPAM);
+
+        assertEquals(Verdict.UNKNOWN, trie.lookup(null));
+        assertEquals(Verdict.UNKNOWN, trie.lookup(""));
+        assertEquals(Verdict.UNKNOWN, trie.lookup("not an address"));
+        assertEquals(Verdict.UNKNOWN, trie.lookup("256.0.0.1"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddRejectsUnknownVerdict() {
+        new IpTrie().add("10.0.0.0/8", Verdict.UNKNOWN);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddRejectsIPv4PrefixOver32() {
+        new IpTrie().add("10.0.0.0/33", Verdict.SPAM);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddRejectsIPv6PrefixOver128() {
+        new IpTrie().add("2001:db8::/129", Verdict.SPAM);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddRejectsInvalidPrefix() {
+        new IpTrie().add("10.0.0.0/x", Verdict.SPAM);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddRejectsInvalidAddress() {
+        new IpTrie().add("10.0.0/8", Verdict.SPAM);
+    }
+
+    @Test
+    public void testParseIPv4() {
+        assertEquals(0L, IpTrie.parseIPv4("0.0.0.0"));
+        assertEquals(0xffffffffL, IpTrie.parseIPv4("255.255.255.255"));
+        assertEquals(0x0a010203L, IpTrie.parseIPv4("10.1.2.3"));
+        assertTrue(IpTrie.parseIPv4("10.1.2") < 0);
+        assertTrue(IpTrie.parseIPv4("10.1.2.3.4") < 0);
+        assertTrue(IpTrie.parseIPv4("10.1.2.256") < 0);
+        assertTrue(IpTrie.parseIPv4("::1") < 0);
+    }
+
+    @Test
+    public void testParseIPv6() {
+        byte[] loopback = IpTrie.parseIPv6("::1");
+        assertNotNull(loopback);
+        assertEquals(16, loopback.length);
+        assertEquals(1, loopback[15]);
+        assertEquals(0, loopback[0]);
+
+        byte[] full = IpTrie.parseIPv6("2001:db8:0:0:0:0:0:ff");
+        assertNotNull(full);
+        assertEquals(0x20, full[0]);
+        assertEquals(0x01, full[1]);
+        assertEquals((byte) 0xff, full[15]);
+
+        assertNull(IpTrie.parseIPv6("2001::db8::1"));
+        assertNull(IpTrie.parseIPv6("1:2:3:4:5:6:7:8:9"));
+        assertNull(IpTrie.parseIPv6("12345::1"));
+    }
+}
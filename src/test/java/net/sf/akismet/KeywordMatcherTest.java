@@ -0,0 +1,125 @@
+/**
+ * Copyright (c) 2005-2007, David A. Czarnecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the "David A. Czarnecki" nor the names of
+ * its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * Products derived from this software may not be called "Akismet Java API",
+ * nor may "Akismet Java API" appear in their name, without prior written permission of
+ * David A. Czarnecki.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sf.akismet;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link KeywordMatcher}
+ *
+ * @version $Id$
+ */
+public class KeywordMatcherTest {
+
+    @Test
+    public void testNoKeywords() {
+        KeywordMatcher matcher = new KeywordMatcher(Collections.<String>emptyList());
+
+        assertEquals(0, matcher.size());
+        assertEquals(0, matcher.count("anything at all", 10));
+    }
+
+    @Test
+    public void testBlankKeywordsIgnored() {
+        KeywordMatcher matcher = new KeywordMatcher(Arrays.asList("", "  ", "pills"));
+
+        assertEquals(1, matcher.size());
+        assertEquals(1, matcher.count("cheap pills", 10));
+    }
+
+    @Test
+    public void testNullText() {
+        KeywordMatcher matcher = new KeywordMatcher(Arrays.asList("pills"));
+
+        assertEquals(0, matcher.count(null, 10));
+    }
+
+    @Test
+    public void testCaseInsensitive() {
+        KeywordMatcher matcher = new KeywordMatcher(Arrays.asList("Casino"));
+
+        assertEquals(3, matcher.count("casino CASINO cAsInO", 10));
+    }
+
+    @Test
+    public void testRepeatedOccurrences() {
+        KeywordMatcher matcher = new KeywordMatcher(Arrays.asList("aa"));
+
+        assertEquals(3, matcher.count("aaaa", 10));
+    }
+
+    @Test
+    public void testOverlappingKeywords() {
+        // "he", "she", "his" and "hers" all occur in "ushers": she, he, hers
+        KeywordMatcher matcher = new KeywordMatcher(Arrays.asList("he", "she", "his", "hers"));
+
+        assertEquals(3, matcher.count("ushers", 10));
+        assertEquals(1, matcher.count("this", 10));
+    }
+
+    @Test
+    public void testKeywordInsideKeyword() {
+        KeywordMatcher matcher = new KeywordMatcher(Arrays.asList("viagra", "agra", "gr"));
+
+        assertEquals(3, matcher.count("viagra", 10));
+    }
+
+    @Test
+    public void testFailureTransitions() {
+        KeywordMatcher matcher = new KeywordMatcher(Arrays.asList("abcd", "bce"));
+
+        assertEquals(1, matcher.count("abce", 10));
+        assertEquals(0, matcher.count("abcbcd", 10));
+        assertEquals(2, matcher.count("abcdbce", 10));
+    }
+
+    @Test
+    public void testLimit() {
+        KeywordMatcher matcher = new KeywordMatcher(Arrays.asList("spam"));
+
+        assertEquals(2, matcher.count("spam spam spam spam", 2));
+        assertEquals(4, matcher.count("spam spam spam spam", 5));
+    }
+
+    @Test
+    public void testDuplicateKeywordsCountOnce() {
+        KeywordMatcher matcher = new KeywordMatcher(Arrays.asList("loan", "LOAN"));
+
+        assertEquals(1, matcher.count("loan", 10));
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2005-2007, David A. Czarnecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the "David A. Czarnecki" nor the names of
+ * its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * Products derived from this software may not be called "Akismet Java API",
+ * nor may "Akismet Java API" appear in their name, without prior written permission of
+ * David A. Czarnecki.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sf.akismet;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link LinkFilter}
+ *
+ * @version $Id$
+ */
+public class LinkFilterTest {
+
+    @Test
+    public void testNoLinks() {
+        assertEquals(0, LinkFilter.count(null, 10));
+        assertEquals(0, LinkFilter.count("", 10));
+        assertEquals(0, LinkFilter.count("plain text, <b>bold</b> and <abbr title=\"x\">abbr</abbr>", 10));
+    }
+
+    @Test
+    public void testBareUrls() {
+        assertEquals(2, LinkFilter.count("see http://example.com and HTTPS://example.org/path?q=1", 10));
+    }
+
+    @Test
+    public void testAnchorCountsOnce() {
+        assertEquals(1, LinkFilter.count("<a href=\"http://example.com\">http://example.com</a>", 10));
+        assertEquals(1, LinkFilter.count("<A HREF='https://example.com'>here</A>", 10));
+    }
+
+    @Test
+    public void testAnchorsAndBareUrls() {
+        String text = "<a href=\"http://a.example\">a</a> http://b.example <a href=\"http://c.example\">c</a>";
+
+        assertEquals(3, LinkFilter.count(text, 10));
+    }
+
+    @Test
+    public void testUnterminatedAnchor() {
+        assertEquals(2, LinkFilter.count("http://a.example <a href=\"http://b.example\">b http://c.example", 10));
+    }
+
+    @Test
+    public void testLimit() {
+        assertEquals(2, LinkFilter.count("http://a http://b http://c", 2));
+    }
+
+    @Test
+    public void testFilter() {
+        LinkFilter filter = new LinkFilter(2);
+
+        assertEquals(Verdict.UNKNOWN, filter.filter(new CommentRequest.Builder().commentContent("http://a.example").build()));
+        assertEquals(Verdict.SPAM, filter.filter(new CommentRequest.Builder()
+                .commentContent("<a href=\"http://a.example\">a</a> http://b.example").build()));
+        assertEquals(Verdict.UNKNOWN, filter.filter(new CommentRequest.Builder()
+                .commentContent("<a href=\"http://a.example\">http://a.example</a>").build()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsZeroMaxLinks() {
+        new LinkFilter(0);
+    }
+}
@@ -0,0 +1,195 @@
+/**
+ * Copyright (c) 2005-2007, David A. Czarnecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the "David A. Czarnecki" nor the names of
+ * its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * Products derived from this software may not be called "Akismet Java API",
+ * nor may "Akismet Java API" appear in their name, without prior written permission of
+ * David A. Czarnecki.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sf.akismet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link TokenBucket}
+ *
+ * @version $Id$
+ */
+public class TokenBucketTest {
+
+    /**
+     * Slow enough that no token is added while a test runs
+     */
+    private static final double SLOW_RATE = 0.001;
+
+    @Test
+    public void testStartsFullAndLimitsBurst() {
+        TokenBucket bucket = new TokenBucket(SLOW_RATE, 3);
+
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire(TokenBucket.Priority.BACKGROUND));
+    }
+
+    @Test
+    public void testRefill() throws Exception {
+        TokenBucket bucket = new TokenBucket(20, 2);
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+
+        Thread.sleep(150);
+
+        assertTrue(bucket.tryAcquire());
+    }
+
+    @Test
+    public void testRefillCappedAtCapacity() throws Exception {
+        TokenBucket bucket = new TokenBucket(1000, 2);
+        Thread.sleep(50);
+
+        assertEquals(2.0, bucket.getAvailable(), 0.0);
+    }
+
+    @Test
+    public void testTimedAcquireWaitsForRefill() throws Exception {
+        TokenBucket bucket = new TokenBucket(10, 1);
+        assertTrue(bucket.tryAcquire());
+
+        long start = System.nanoTime();
+        assertTrue(bucket.tryAcquire(TokenBucket.Priority.INTERACTIVE, 2, TimeUnit.SECONDS));
+        long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue("waited " + waited + "ms", waited >= 50 && waited < 1000);
+    }
+
+    @Test
+    public void testTimedAcquireTimesOut() throws Exception {
+        TokenBucket bucket = new TokenBucket(SLOW_RATE, 1);
+        assertTrue(bucket.tryAcquire());
+
+        long start = System.nanoTime();
+        assertFalse(bucket.tryAcquire(TokenBucket.Priority.INTERACTIVE, 50, TimeUnit.MILLISECONDS));
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 45);
+    }
+
+    @Test
+    public void testInteractiveReserve() {
+        TokenBucket bucket = new TokenBucket(SLOW_RATE, 3);
+        bucket.setInteractiveReserve(2);
+
+        assertTrue(bucket.tryAcquire(TokenBucket.Priority.BACKGROUND));
+        assertFalse(bucket.tryAcquire(TokenBucket.Priority.BACKGROUND));
+        assertTrue(bucket.tryAcquire(TokenBucket.Priority.INTERACTIVE));
+        assertTrue(bucket.tryAcquire(TokenBucket.Priority.INTERACTIVE));
+        assertFalse(bucket.tryAcquire(TokenBucket.Priority.INTERACTIVE));
+    }
+
+    @Test
+    public void testWaitingInteractiveCallerServedFirst() throws Exception {
+        final TokenBucket bucket = new TokenBucket(5, 1);
+        assertTrue(bucket.tryAcquire());
+
+        final boolean[] acquired = new boolean[1];
+        Thread interactive = new Thread() {
+            public void run() {
+                try {
+                    acquired[0] = bucket.tryAcquire(TokenBucket.Priority.INTERACTIVE, 5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    // Fails the test below
+                }
+            }
+        };
+        interactive.start();
+        Thread.sleep(50);
+
+        // The token arriving while the interactive caller waits goes to it
+        assertFalse(bucket.tryAcquire(TokenBucket.Priority.BACKGROUND, 100, TimeUnit.MILLISECONDS));
+        interactive.join(5000);
+        assertTrue(acquired[0]);
+
+        assertTrue(bucket.tryAcquire(TokenBucket.Priority.BACKGROUND, 5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testInterruptedWhileWaiting() throws Exception {
+        TokenBucket bucket = new TokenBucket(SLOW_RATE, 1);
+        assertTrue(bucket.tryAcquire());
+
+        Thread.currentThread().interrupt();
+        try {
+            bucket.acquire();
+            fail("acquire() returned");
+        } catch (InterruptedException e) {
+            assertFalse(Thread.currentThread().isInterrupted());
+        }
+    }
+
+    @Test
+    public void testShared() {
+        String key = "token-bucket-test-key";
+        try {
+            TokenBucket bucket = TokenBucket.shared(key, 10, 5);
+
+            assertSame(bucket, TokenBucket.shared(key, 1, 1));
+            assertSame(bucket, TokenBucket.getShared(key));
+            assertEquals(5, bucket.getCapacity());
+            assertEquals(10.0, bucket.getRate(), 1e-9);
+        } finally {
+            TokenBucket.removeShared(key);
+        }
+
+        assertNull(TokenBucket.getShared(key));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsZeroRate() {
+        new TokenBucket(0, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsZeroCapacity() {
+        new TokenBucket(1, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsReserveOfWholeCapacity() {
+        new TokenBucket(1, 2).setInteractiveReserve(2);
+    }
+}
@@ -0,0 +1,155 @@
+/**
+ * Copyright (c) 2005-2007, David A. Czarnecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * Neither the name of the "David A. Czarnecki" nor the names of
+ * its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * Products derived from this software may not be called "Akismet Java API",
+ * nor may "Akismet Java API" appear in their name, without prior written permission of
+ * David A. Czarnecki.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sf.akismet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link VerdictCache}
+ *
+ * @version $Id$
+ */
+public class VerdictCacheTest {
+
+    private static final String BLOG = "http://example.com";
+
+    private static CommentRequest comment(String content) {
+        return new CommentRequest.Builder().ipAddress("127.0.0.1").commentContent(content).build();
+    }
+
+    @Test
+    public void testPutAndGet() {
+        VerdictCache cache = new VerdictCache(10, 60000);
+        AkismetResult result = AkismetResult.fallback(Verdict.SPAM);
+
+        assertNull(cache.get(BLOG, comment("x")));
+        cache.put(BLOG, comment("x"), result);
+
+        assertSame(result, cache.get(BLOG, comment("x")));
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testKeyedByBlogAndRequest() {
+        VerdictCache cache = new VerdictCache(10, 60000);
+        cache.put(BLOG, comment("x"), AkismetResult.fallback(Verdict.SPAM));
+
+        assertNull(cache.get("http://other.example.com", comment("x")));
+        assertNull(cache.get(BLOG, comment("y")));
+        assertNull(cache.get(BLOG, new CommentRequest.Builder().ipAddress("127.0.0.2").commentContent("x").build()));
+        assertTrue(VerdictCache.fingerprint(BLOG, comment("x")) != VerdictCache.fingerprint("http://other.example.com", comment("x")));
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        VerdictCache cache = new VerdictCache(10, 50);
+        cache.put(BLOG, comment("x"), AkismetResult.fallback(Verdict.HAM));
+
+        assertNotNull(cache.get(BLOG, comment("x")));
+        Thread.sleep(100);
+
+        assertNull(cache.get(BLOG, comment("x")));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testPutRefreshesExpiry() throws Exception {
+        VerdictCache cache = new VerdictCache(10, 200);
+        cache.put(BLOG, comment("x"), AkismetResult.fallback(Verdict.HAM));
+        Thread.sleep(120);
+        cache.put(BLOG, comment("x"), AkismetResult.fallback(Verdict.SPAM));
+        Thread.sleep(120);
+
+        AkismetResult result = cache.get(BLOG, comment("x"));
+        assertNotNull(result);
+        assertEquals(Verdict.SPAM, result.getVerdict());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        VerdictCache cache = new VerdictCache(1, 60000);
+        cache.put(BLOG, comment("a"), AkismetResult.fallback(Verdict.HAM));
+        cache.put(BLOG, comment("b"), AkismetResult.fallback(Verdict.HAM));
+
+        assertNull(cache.get(BLOG, comment("a")));
+        assertNotNull(cache.get(BLOG, comment("b")));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testSizeBounded() {
+        VerdictCache cache = new VerdictCache(100, 60000);
+        for (int i = 0; i < 1000; i++) {
+            cache.put(BLOG, comment("c" + i), AkismetResult.fallback(Verdict.HAM));
+            assertNotNull(cache.get(BLOG, comment("c" + i)));
+            assertTrue(cache.size() <= 100);
+        }
+
+        assertEquals(100, cache.getMaxEntries());
+    }
+
+    @Test
+    public void testInvalidate() {
+        VerdictCache cache = new VerdictCache(10, 60000);
+        cache.put(BLOG, comment("x"), AkismetResult.fallback(Verdict.HAM));
+        cache.put(BLOG, comment("y"), AkismetResult.fallback(Verdict.HAM));
+
+        cache.invalidate("http://other.example.com", comment("x"));
+        assertEquals(2, cache.size());
+
+        cache.invalidate(BLOG, comment("x"));
+        assertNull(cache.get(BLOG, comment("x")));
+        assertNotNull(cache.get(BLOG, comment("y")));
+
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsZeroEntries() {
+        new VerdictCache(0, 60000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsZeroTimeToLive() {
+        new VerdictCache(10, 0);
+    }
+}